@@ -0,0 +1,130 @@
+package com.milkmanagement.cache;
+
+import com.milkmanagement.dto.DashboardStatsDTO;
+import com.milkmanagement.event.DashboardDataChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches dashboard statistics per (fromDate, toDate) range.
+ *
+ * Entries are evicted after commit of any delivery or payment whose date falls
+ * inside the cached range; customer changes and rollup rebuilds evict
+ * everything because they affect every entry. Ranges that ended before today are
+ * kept until a write touches them, open ranges additionally expire after
+ * dashboard.cache.open-range-ttl-ms as a guard against out-of-band writes.
+ *
+ * Cached DTOs are shared between callers and must not be modified.
+ */
+@Component
+public class DashboardStatsCache {
+    
+    private final Map<RangeKey, CachedStats> entries = new ConcurrentHashMap<>();
+    
+    // Bumped on every eviction so a load that raced with a write is not cached
+    private final AtomicLong writeEpoch = new AtomicLong();
+    
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer rebuildTimer;
+    
+    @Value("${dashboard.cache.open-range-ttl-ms:60000}")
+    private long openRangeTtlMs;
+    
+    @Value("${dashboard.cache.max-entries:1000}")
+    private int maxEntries;
+    
+    public DashboardStatsCache(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("dashboard.stats.cache.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("dashboard.stats.cache.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.rebuildTimer = Timer.builder("dashboard.stats.cache.rebuild")
+                .description("Time spent recomputing dashboard statistics on a cache miss")
+                .register(meterRegistry);
+        Gauge.builder("dashboard.stats.cache.size", entries, Map::size)
+                .register(meterRegistry);
+        Gauge.builder("dashboard.stats.cache.hit.ratio", this, DashboardStatsCache::hitRatio)
+                .register(meterRegistry);
+    }
+    
+    public DashboardStatsDTO get(LocalDate fromDate, LocalDate toDate, Supplier<DashboardStatsDTO> loader) {
+        RangeKey key = new RangeKey(fromDate, toDate);
+        long now = System.currentTimeMillis();
+        
+        CachedStats cached = entries.get(key);
+        if (cached != null && !cached.isExpired(now)) {
+            hits.increment();
+            return cached.stats();
+        }
+        
+        misses.increment();
+        long epoch = writeEpoch.get();
+        DashboardStatsDTO stats = rebuildTimer.record(loader);
+        
+        if (stats != null && writeEpoch.get() == epoch) {
+            if (entries.size() >= maxEntries) {
+                trim(now);
+            }
+            long expiresAt = key.isClosed(LocalDate.now()) ? Long.MAX_VALUE : now + openRangeTtlMs;
+            entries.put(key, new CachedStats(stats, expiresAt));
+        }
+        return stats;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDashboardDataChanged(DashboardDataChangedEvent event) {
+        writeEpoch.incrementAndGet();
+        if (event.affectsAllDates()) {
+            entries.clear();
+            return;
+        }
+        entries.keySet().removeIf(key -> event.getDates().stream().anyMatch(key::covers));
+    }
+    
+    private void trim(long now) {
+        // Drop expired and open-ended entries first; closed ranges are the valuable ones
+        entries.values().removeIf(entry -> entry.isExpired(now) || entry.expiresAt() != Long.MAX_VALUE);
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+    }
+    
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+    
+    private record RangeKey(LocalDate fromDate, LocalDate toDate) {
+        
+        boolean covers(LocalDate date) {
+            return (fromDate == null || !date.isBefore(fromDate))
+                    && (toDate == null || !date.isAfter(toDate));
+        }
+        
+        boolean isClosed(LocalDate today) {
+            return toDate != null && toDate.isBefore(today);
+        }
+    }
+    
+    private record CachedStats(DashboardStatsDTO stats, long expiresAt) {
+        
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
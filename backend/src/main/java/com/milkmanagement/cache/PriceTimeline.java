@@ -0,0 +1,196 @@
+package com.milkmanagement.cache;
+
+import com.milkmanagement.entity.ProductPrice;
+import com.milkmanagement.event.CatalogChangedEvent;
+import com.milkmanagement.repository.ProductPriceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory price history per product, answering "price of product P on date D"
+ * with a binary search and no database access.
+ *
+ * Each product's product_prices rows are flattened into sorted, disjoint
+ * segments. Where rows overlap (a replaced price is closed on the day its
+ * successor starts) the row with the later effective_from wins, ties going to
+ * the newer row. Deactivated rows with an effective_to remain part of the
+ * history; deactivated rows without one are ignored.
+ *
+ * Like ProductCatalog, the map of timelines is immutable and swapped after
+ * commit of any write that may have changed a product's prices.
+ */
+@Component
+public class PriceTimeline {
+    
+    @Autowired
+    private ProductPriceRepository productPriceRepository;
+    
+    private final TransactionTemplate readTransaction;
+    
+    private final AtomicReference<Map<Long, Segments>> current = new AtomicReference<>();
+    
+    public PriceTimeline(PlatformTransactionManager transactionManager) {
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+    
+    public Optional<BigDecimal> priceOn(Long productId, LocalDate date) {
+        Segments segments = timelines().get(productId);
+        return segments != null ? segments.priceOn(date.toEpochDay()) : Optional.empty();
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.isPricesChanged()) {
+            refresh(event.getProductIds());
+        }
+    }
+    
+    private Map<Long, Segments> timelines() {
+        Map<Long, Segments> timelines = current.get();
+        return timelines != null ? timelines : reload();
+    }
+    
+    private synchronized Map<Long, Segments> reload() {
+        List<ProductPrice> rows = readTransaction.execute(status -> productPriceRepository.findAllForTimeline());
+        Map<Long, Segments> timelines = Collections.unmodifiableMap(build(rows));
+        current.set(timelines);
+        return timelines;
+    }
+    
+    private synchronized void refresh(Collection<Long> productIds) {
+        if (current.get() == null) {
+            reload();
+            return;
+        }
+        
+        List<ProductPrice> rows = readTransaction.execute(status -> productPriceRepository.findForTimeline(productIds));
+        Map<Long, Segments> timelines = new HashMap<>(current.get());
+        timelines.keySet().removeAll(productIds);
+        timelines.putAll(build(rows));
+        current.set(Collections.unmodifiableMap(timelines));
+    }
+    
+    // Rows arrive ordered by product, effective_from and id
+    private static Map<Long, Segments> build(List<ProductPrice> rows) {
+        Map<Long, Segments> timelines = new HashMap<>();
+        int start = 0;
+        while (start < rows.size()) {
+            Long productId = rows.get(start).getProduct().getId();
+            int end = start;
+            while (end < rows.size() && rows.get(end).getProduct().getId().equals(productId)) {
+                end++;
+            }
+            Segments segments = Segments.of(rows.subList(start, end));
+            if (segments != null) {
+                timelines.put(productId, segments);
+            }
+            start = end;
+        }
+        return timelines;
+    }
+    
+    private record Interval(long from, long to, BigDecimal price) {
+    }
+    
+    // Parallel arrays of disjoint [starts[i], ends[i]] day ranges, sorted by start
+    private record Segments(long[] starts, long[] ends, BigDecimal[] prices) {
+        
+        Optional<BigDecimal> priceOn(long day) {
+            int index = Arrays.binarySearch(starts, day);
+            if (index < 0) {
+                // Insertion point minus one: the last segment starting before the day
+                index = -index - 2;
+            }
+            if (index < 0 || ends[index] < day) {
+                return Optional.empty();
+            }
+            return Optional.of(prices[index]);
+        }
+        
+        static Segments of(List<ProductPrice> rows) {
+            List<Interval> intervals = new ArrayList<>();
+            for (ProductPrice row : rows) {
+                boolean active = !Boolean.FALSE.equals(row.getIsActive());
+                if (!active && row.getEffectiveTo() == null) {
+                    continue;
+                }
+                long to = row.getEffectiveTo() != null ? row.getEffectiveTo().toEpochDay() : Long.MAX_VALUE;
+                if (to >= row.getEffectiveFrom().toEpochDay()) {
+                    intervals.add(new Interval(row.getEffectiveFrom().toEpochDay(), to, row.getPricePerUnit()));
+                }
+            }
+            if (intervals.isEmpty()) {
+                return null;
+            }
+            
+            // Split at every interval boundary; within each piece the latest covering interval wins
+            TreeSet<Long> boundaries = new TreeSet<>();
+            for (Interval interval : intervals) {
+                boundaries.add(interval.from());
+                if (interval.to() != Long.MAX_VALUE) {
+                    boundaries.add(interval.to() + 1);
+                }
+            }
+            
+            List<long[]> ranges = new ArrayList<>();
+            List<BigDecimal> prices = new ArrayList<>();
+            Long[] points = boundaries.toArray(new Long[0]);
+            for (int i = 0; i < points.length; i++) {
+                long from = points[i];
+                long to = i + 1 < points.length ? points[i + 1] - 1 : Long.MAX_VALUE;
+                Interval winner = null;
+                for (Interval interval : intervals) {
+                    // Intervals are ordered by start then id, so the last match is the latest
+                    if (interval.from() <= from && interval.to() >= from) {
+                        winner = interval;
+                    }
+                }
+                if (winner == null) {
+                    continue;
+                }
+                int last = ranges.size() - 1;
+                if (last >= 0 && ranges.get(last)[1] == from - 1 && prices.get(last).compareTo(winner.price()) == 0) {
+                    ranges.get(last)[1] = to;
+                } else {
+                    ranges.add(new long[] {from, to});
+                    prices.add(winner.price());
+                }
+            }
+            
+            long[] starts = new long[ranges.size()];
+            long[] ends = new long[ranges.size()];
+            for (int i = 0; i < ranges.size(); i++) {
+                starts[i] = ranges.get(i)[0];
+                ends[i] = ranges.get(i)[1];
+            }
+            return new Segments(starts, ends, prices.toArray(new BigDecimal[0]));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.milkmanagement.cache;
+
+import com.milkmanagement.dto.ProductDTO;
+import com.milkmanagement.event.CatalogChangedEvent;
+import com.milkmanagement.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable in-memory snapshot of the product catalog: every product with its
+ * stock quantity and latest active price.
+ *
+ * Readers take the current snapshot with a single volatile read and never
+ * lock. After commit of a product, stock or price write the changed products
+ * are reloaded and a new snapshot is swapped in; unchanged entries are shared
+ * with the previous snapshot and the search index is rebuilt alongside.
+ * Refreshes are serialized so a later refresh always reads later data.
+ *
+ * Snapshot DTOs are shared between callers and must not be modified.
+ */
+@Component
+public class ProductCatalog {
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    private final TransactionTemplate readTransaction;
+    
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    
+    public ProductCatalog(PlatformTransactionManager transactionManager) {
+        // AFTER_COMMIT listeners still see the finished transaction bound, so refreshes need their own
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+    
+    public Snapshot snapshot() {
+        Snapshot snapshot = current.get();
+        return snapshot != null ? snapshot : reload();
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+    
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        refresh(event.getProductIds());
+    }
+    
+    public synchronized Snapshot reload() {
+        List<ProductDTO> rows = readTransaction.execute(status -> productRepository.findCatalog());
+        Map<Long, ProductDTO> byId = new TreeMap<>();
+        for (ProductDTO row : rows) {
+            // Rows are ordered by product id, newest price first, so the first row per product wins
+            if (!byId.containsKey(row.getId())) {
+                byId.put(row.getId(), row);
+            }
+        }
+        return publish(byId);
+    }
+    
+    private synchronized void refresh(Iterable<Long> productIds) {
+        Snapshot previous = current.get();
+        if (previous == null) {
+            reload();
+            return;
+        }
+        
+        Map<Long, ProductDTO> byId = new TreeMap<>(previous.byId());
+        readTransaction.executeWithoutResult(status -> {
+            for (Long productId : productIds) {
+                List<ProductDTO> rows = productRepository.findCatalogEntry(productId);
+                if (rows.isEmpty()) {
+                    byId.remove(productId);
+                } else {
+                    byId.put(productId, rows.get(0));
+                }
+            }
+        });
+        publish(byId);
+    }
+    
+    private Snapshot publish(Map<Long, ProductDTO> byId) {
+        List<ProductDTO> products = Collections.unmodifiableList(new ArrayList<>(byId.values()));
+        Snapshot snapshot = new Snapshot(products, Collections.unmodifiableMap(byId), ProductSearchIndex.build(products));
+        current.set(snapshot);
+        return snapshot;
+    }
+    
+    public record Snapshot(List<ProductDTO> products, Map<Long, ProductDTO> byId, ProductSearchIndex searchIndex) {
+        
+        public Optional<ProductDTO> find(Long productId) {
+            return Optional.ofNullable(byId.get(productId));
+        }
+        
+        // Ranked matches over name, category and description
+        public List<ProductDTO> search(String query) {
+            return resolve(searchIndex.search(query));
+        }
+        
+        private List<ProductDTO> resolve(List<Long> productIds) {
+            List<ProductDTO> matches = new ArrayList<>(productIds.size());
+            for (Long productId : productIds) {
+                matches.add(byId.get(productId));
+            }
+            return matches;
+        }
+    }
+}
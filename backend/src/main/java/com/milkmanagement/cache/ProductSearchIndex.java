@@ -0,0 +1,206 @@
+package com.milkmanagement.cache;
+
+import com.milkmanagement.dto.ProductDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable token index over product name, category and description, built
+ * with every catalog snapshot.
+ *
+ * Each query term must match a token of the product, exactly, as a prefix
+ * (sorted token map) or as a substring (gram map from every 1-, 2- and
+ * 3-character gram to the tokens containing it). A term of up to three
+ * characters reads its own gram; a longer one visits the tokens holding its
+ * rarest trigram. Either way a lookup only visits tokens that can match, so
+ * its cost follows the number of matches rather than the catalog size.
+ *
+ * Results are ranked by match quality weighted by field, name first. When the
+ * query is more than one bare term, the products matching every term are
+ * checked for the query as written, across token boundaries, in name or
+ * description; those rank ahead of the rest.
+ */
+public final class ProductSearchIndex {
+    
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int SUBSTRING = 1;
+    
+    private static final int MAX_GRAM = 3;
+    
+    private enum Field {
+        NAME(3), CATEGORY(2), DESCRIPTION(1);
+        
+        private final int weight;
+        
+        Field(int weight) {
+            this.weight = weight;
+        }
+    }
+    
+    private record Posting(Long productId, Field field) {
+    }
+    
+    private final NavigableMap<String, List<Posting>> postings;
+    private final Map<String, List<String>> tokensByGram;
+    
+    // Lower-cased name and description per product, for the phrase check
+    private final Map<Long, String> phraseTexts;
+    
+    private ProductSearchIndex(NavigableMap<String, List<Posting>> postings, Map<String, List<String>> tokensByGram,
+                               Map<Long, String> phraseTexts) {
+        this.postings = postings;
+        this.tokensByGram = tokensByGram;
+        this.phraseTexts = phraseTexts;
+    }
+    
+    public static ProductSearchIndex build(Iterable<ProductDTO> products) {
+        TreeMap<String, List<Posting>> postings = new TreeMap<>();
+        Map<Long, String> phraseTexts = new HashMap<>();
+        for (ProductDTO product : products) {
+            addPostings(postings, product.getId(), Field.NAME, product.getName());
+            addPostings(postings, product.getId(), Field.CATEGORY, product.getCategory());
+            addPostings(postings, product.getId(), Field.DESCRIPTION, product.getDescription());
+            // The line break keeps a phrase from matching across the two fields
+            phraseTexts.put(product.getId(), lowerCase(product.getName()) + "\n" + lowerCase(product.getDescription()));
+        }
+        
+        Map<String, List<String>> tokensByGram = new HashMap<>();
+        for (String token : postings.keySet()) {
+            for (String gram : grams(token)) {
+                List<String> tokens = tokensByGram.computeIfAbsent(gram, key -> new ArrayList<>());
+                // A token repeating a gram ("aaaa") is listed once
+                if (tokens.isEmpty() || !tokens.get(tokens.size() - 1).equals(token)) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return new ProductSearchIndex(Collections.unmodifiableNavigableMap(postings), tokensByGram, phraseTexts);
+    }
+    
+    public List<Long> search(String query) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<Long, Integer> scores = null;
+        for (String term : terms) {
+            Map<Long, Integer> termScores = scoreTerm(term);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((productId, score) -> score + termScores.get(productId));
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+        
+        // Only the products matching every term are checked, so this too grows with the matches
+        String phrase = query.trim().toLowerCase(Locale.ROOT);
+        if (terms.size() > 1 || !phrase.equals(terms.get(0))) {
+            int phraseBonus = EXACT * Field.NAME.weight * terms.size();
+            scores.replaceAll((productId, score) ->
+                    phraseTexts.get(productId).contains(phrase) ? score + phraseBonus : score);
+        }
+        
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+    
+    private Map<Long, Integer> scoreTerm(String term) {
+        Map<Long, Integer> scores = new HashMap<>();
+        
+        // Every token starting with the term sits in one contiguous range of the sorted map
+        for (Map.Entry<String, List<Posting>> entry : postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            int quality = entry.getKey().equals(term) ? EXACT : PREFIX;
+            addScores(scores, entry.getValue(), quality);
+        }
+        
+        for (String token : candidateTokens(term)) {
+            if (!token.startsWith(term) && token.contains(term)) {
+                addScores(scores, postings.get(token), SUBSTRING);
+            }
+        }
+        return scores;
+    }
+    
+    // Short terms are a gram themselves; longer ones use their rarest trigram. A missing gram means no token
+    // can contain the term
+    private List<String> candidateTokens(String term) {
+        if (term.length() <= MAX_GRAM) {
+            return tokensByGram.getOrDefault(term, List.of());
+        }
+        List<String> smallest = null;
+        for (String trigram : trigrams(term)) {
+            List<String> tokens = tokensByGram.get(trigram);
+            if (tokens == null) {
+                return List.of();
+            }
+            if (smallest == null || tokens.size() < smallest.size()) {
+                smallest = tokens;
+            }
+        }
+        return smallest != null ? smallest : List.of();
+    }
+    
+    private static void addScores(Map<Long, Integer> scores, List<Posting> matches, int quality) {
+        for (Posting posting : matches) {
+            scores.merge(posting.productId(), quality * posting.field().weight, Math::max);
+        }
+    }
+    
+    private static void addPostings(Map<String, List<Posting>> postings, Long productId, Field field, String text) {
+        for (String token : tokenize(text)) {
+            postings.computeIfAbsent(token, key -> new ArrayList<>()).add(new Posting(productId, field));
+        }
+    }
+    
+    private static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+"))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+    
+    private static String lowerCase(String text) {
+        return text != null ? text.toLowerCase(Locale.ROOT) : "";
+    }
+    
+    // Every substring of one to MAX_GRAM characters, in order of position
+    private static List<String> grams(String token) {
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i < token.length(); i++) {
+            for (int length = 1; length <= MAX_GRAM && i + length <= token.length(); length++) {
+                grams.add(token.substring(i, i + length));
+            }
+        }
+        return grams;
+    }
+    
+    private static List<String> trigrams(String token) {
+        List<String> trigrams = new ArrayList<>();
+        for (int i = 0; i + 3 <= token.length(); i++) {
+            trigrams.add(token.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
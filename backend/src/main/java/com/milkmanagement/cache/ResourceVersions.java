@@ -0,0 +1,83 @@
+package com.milkmanagement.cache;
+
+import com.milkmanagement.event.CatalogChangedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Version stamp per REST resource collection, used as ETag for conditional GETs.
+ *
+ * Services bump the collection they write; the bump is applied after commit so
+ * a client can never hold a tag for data that was rolled back. Product, stock
+ * and price writes already publish CatalogChangedEvent, which bumps PRODUCTS.
+ *
+ * Stamps are seeded from the clock at startup so tags issued before a restart
+ * never match afterwards.
+ */
+@Component
+public class ResourceVersions {
+    
+    public enum Resource {
+        PRODUCTS, CUSTOMERS, DELIVERIES, INVENTORY
+    }
+    
+    private final Map<Resource, AtomicLong> versions = new EnumMap<>(Resource.class);
+    
+    public ResourceVersions() {
+        long seed = System.currentTimeMillis();
+        for (Resource resource : Resource.values()) {
+            versions.put(resource, new AtomicLong(seed));
+        }
+    }
+    
+    public long current(Resource resource) {
+        return versions.get(resource).get();
+    }
+    
+    // Quoted strong ETag over the current stamps of every resource the response is built from
+    public String eTag(Resource... resources) {
+        return Stream.of(resources)
+                .map(resource -> Long.toString(current(resource)))
+                .collect(Collectors.joining("-", "\"", "\""));
+    }
+    
+    // As eTag(), for responses that also depend on the current date, so a tag issued yesterday no longer matches
+    public String eTag(LocalDate today, Resource... resources) {
+        return Stream.concat(Stream.of(resources).map(resource -> Long.toString(current(resource))),
+                        Stream.of(today.toString()))
+                .collect(Collectors.joining("-", "\"", "\""));
+    }
+    
+    public void bump(Resource resource) {
+        AtomicLong version = versions.get(resource);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                }
+            });
+        } else {
+            version.incrementAndGet();
+        }
+    }
+    
+    // Runs after ProductCatalog has swapped in the new snapshot, so a new tag never serves an old body
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        versions.get(Resource.PRODUCTS).incrementAndGet();
+    }
+}
@@ -1,7 +1,9 @@
 package com.milkmanagement.controller;
 
+import com.milkmanagement.cache.ResourceVersions.Resource;
 import com.milkmanagement.dto.CustomerDTO;
 import com.milkmanagement.service.CustomerService;
+import com.milkmanagement.web.VersionedResource;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -19,6 +21,7 @@ public class CustomerController {
     private CustomerService customerService;
     
     @GetMapping
+    @VersionedResource(Resource.CUSTOMERS)
     public ResponseEntity<List<CustomerDTO>> getAllCustomers() {
         try {
             List<CustomerDTO> customers = customerService.getAllCustomers();
@@ -29,6 +32,7 @@ public class CustomerController {
     }
     
     @GetMapping("/{id}")
+    @VersionedResource(Resource.CUSTOMERS)
     public ResponseEntity<CustomerDTO> getCustomerById(@PathVariable Long id) {
         try {
             CustomerDTO customer = customerService.getCustomerById(id);
@@ -1,11 +1,22 @@
 package com.milkmanagement.controller;
 
 import com.milkmanagement.dto.DashboardStatsDTO;
+import com.milkmanagement.dto.SalesSeriesDTO;
+import com.milkmanagement.service.DailySalesSummaryService;
 import com.milkmanagement.service.DashboardService;
+import com.milkmanagement.service.DashboardStreamService;
+import com.milkmanagement.service.SalesSeriesService;
+import com.milkmanagement.util.TimeGranularity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -15,6 +26,15 @@ public class DashboardController {
     @Autowired
     private DashboardService dashboardService;
     
+    @Autowired
+    private DailySalesSummaryService dailySalesSummaryService;
+    
+    @Autowired
+    private DashboardStreamService dashboardStreamService;
+    
+    @Autowired
+    private SalesSeriesService salesSeriesService;
+    
     @GetMapping("/stats")
     public ResponseEntity<DashboardStatsDTO> getDashboardStats(
             @RequestParam(required = false)
@@ -30,4 +50,46 @@ public class DashboardController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+    
+    @GetMapping("/series")
+    public ResponseEntity<SalesSeriesDTO> getSalesSeries(
+            @RequestParam(required = false)
+            @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE)
+            LocalDate fromDate,
+            @RequestParam(required = false)
+            @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE)
+            LocalDate toDate,
+            @RequestParam(required = false, defaultValue = "DAY") String granularity,
+            @RequestParam(required = false, defaultValue = "NONE") String groupBy) {
+        try {
+            SalesSeriesDTO series = salesSeriesService.getSeries(fromDate, toDate,
+                    TimeGranularity.from(granularity), SalesSeriesService.GroupBy.valueOf(groupBy.trim().toUpperCase()));
+            
+            // A range that ended before today only changes through back-dated corrections
+            CacheControl cacheControl = series.getToDate().isBefore(LocalDate.now())
+                    ? CacheControl.maxAge(1, TimeUnit.HOURS).cachePrivate()
+                    : CacheControl.noCache();
+            return ResponseEntity.ok().cacheControl(cacheControl).body(series);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDashboardStats() {
+        return dashboardStreamService.subscribe();
+    }
+    
+    @PostMapping("/summary/rebuild")
+    public ResponseEntity<?> rebuildSalesSummary() {
+        try {
+            dailySalesSummaryService.rebuild();
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error: " + e.getMessage());
+        }
+    }
 }
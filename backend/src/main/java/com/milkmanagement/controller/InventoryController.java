@@ -1,15 +1,27 @@
 package com.milkmanagement.controller;
 
+import com.milkmanagement.cache.ResourceVersions.Resource;
+import com.milkmanagement.dto.InventoryAggregateDTO;
+import com.milkmanagement.dto.InventoryBatchRequest;
+import com.milkmanagement.dto.InventoryBatchResultDTO;
 import com.milkmanagement.dto.InventoryEntryDTO;
+import com.milkmanagement.dto.InventoryEntryPageDTO;
 import com.milkmanagement.dto.InventoryStatusDTO;
 import com.milkmanagement.dto.InventoryUpdateRequest;
+import com.milkmanagement.dto.StockLevelDTO;
 import com.milkmanagement.service.InventoryService;
+import com.milkmanagement.service.StockHistoryService;
+import com.milkmanagement.util.TimeGranularity;
+import com.milkmanagement.web.VersionedResource;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -17,9 +29,16 @@ import java.util.List;
 @RequestMapping("/api/inventory")
 public class InventoryController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private InventoryService inventoryService;
 
+    @Autowired
+    private StockHistoryService stockHistoryService;
+
     @GetMapping("/status")
     public ResponseEntity<InventoryStatusDTO> getInventoryStatus(@RequestParam(required = false) Long productId) {
         try {
@@ -33,6 +52,31 @@ public class InventoryController {
         }
     }
 
+    @GetMapping("/status/all")
+    @VersionedResource(value = Resource.PRODUCTS, dated = true)
+    public ResponseEntity<List<InventoryStatusDTO>> getAllInventoryStatuses() {
+        try {
+            return ResponseEntity.ok(inventoryService.getAllInventoryStatuses());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Stock of a product at a point in time (default: now), from the latest snapshot and the movements since
+    @GetMapping("/stock/{productId}")
+    public ResponseEntity<StockLevelDTO> getStockAt(
+            @PathVariable Long productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        try {
+            StockLevelDTO level = stockHistoryService.getStockAt(productId, at != null ? at : LocalDateTime.now());
+            return ResponseEntity.ok(level);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @PostMapping("/update")
     public ResponseEntity<?> updateInventory(@Valid @RequestBody InventoryUpdateRequest request) {
         try {
@@ -46,12 +90,54 @@ public class InventoryController {
         }
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<?> recordInventoryBatch(@Valid @RequestBody InventoryBatchRequest request) {
+        try {
+            InventoryBatchResultDTO result = inventoryService.recordInventoryBatch(request.getEntries());
+            return ResponseEntity.ok(result);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error: " + e.getMessage());
+        }
+    }
+
+    // Entries in a date range (default: last 28 days), newest first; X-Next-Cursor carries the cursor of the next page
     @GetMapping("/entries")
+    @VersionedResource(value = {Resource.INVENTORY, Resource.PRODUCTS}, dated = true)
     public ResponseEntity<List<InventoryEntryDTO>> getAllInventoryEntries(
+            @RequestParam(required = false) Long productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            InventoryEntryPageDTO page = inventoryService.getInventoryEntries(productId, fromDate, toDate, cursor, pageSize);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getEntries());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/aggregates")
+    @VersionedResource(value = {Resource.INVENTORY, Resource.PRODUCTS}, dated = true)
+    public ResponseEntity<List<InventoryAggregateDTO>> getInventoryAggregates(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(required = false, defaultValue = "DAY") String granularity,
             @RequestParam(required = false) Long productId) {
         try {
-            List<InventoryEntryDTO> entries = inventoryService.getAllInventoryEntries(productId);
-            return ResponseEntity.ok(entries);
+            List<InventoryAggregateDTO> aggregates = inventoryService.getInventoryAggregates(fromDate, toDate,
+                    TimeGranularity.from(granularity), productId);
+            return ResponseEntity.ok(aggregates);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().build();
         } catch (Exception e) {
@@ -60,6 +146,7 @@ public class InventoryController {
     }
 
     @GetMapping("/entries/{id}")
+    @VersionedResource({Resource.INVENTORY, Resource.PRODUCTS})
     public ResponseEntity<InventoryEntryDTO> getInventoryEntryById(@PathVariable Long id) {
         try {
             InventoryEntryDTO entry = inventoryService.getInventoryEntryById(id);
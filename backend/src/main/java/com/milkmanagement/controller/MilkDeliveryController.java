@@ -1,7 +1,11 @@
 package com.milkmanagement.controller;
 
+import com.milkmanagement.cache.ResourceVersions.Resource;
+import com.milkmanagement.dto.DeliveryRunResultDTO;
 import com.milkmanagement.dto.MilkDeliveryDTO;
+import com.milkmanagement.service.IdempotencyService;
 import com.milkmanagement.service.MilkDeliveryService;
+import com.milkmanagement.web.VersionedResource;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -20,7 +24,12 @@ public class MilkDeliveryController {
     @Autowired
     private MilkDeliveryService milkDeliveryService;
     
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    // Delivery DTOs carry customer and product names
     @GetMapping
+    @VersionedResource({Resource.DELIVERIES, Resource.CUSTOMERS, Resource.PRODUCTS})
     public ResponseEntity<List<MilkDeliveryDTO>> getAllDeliveries() {
         try {
             List<MilkDeliveryDTO> deliveries = milkDeliveryService.getAllDeliveries();
@@ -31,6 +40,7 @@ public class MilkDeliveryController {
     }
     
     @GetMapping("/customer/{customerId}")
+    @VersionedResource({Resource.DELIVERIES, Resource.CUSTOMERS, Resource.PRODUCTS})
     public ResponseEntity<List<MilkDeliveryDTO>> getDeliveriesByCustomer(@PathVariable Long customerId) {
         try {
             List<MilkDeliveryDTO> deliveries = milkDeliveryService.getDeliveriesByCustomer(customerId);
@@ -43,6 +53,7 @@ public class MilkDeliveryController {
     }
     
     @GetMapping("/date/{date}")
+    @VersionedResource({Resource.DELIVERIES, Resource.CUSTOMERS, Resource.PRODUCTS})
     public ResponseEntity<List<MilkDeliveryDTO>> getDeliveriesByDate(
             @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
         try {
@@ -54,10 +65,28 @@ public class MilkDeliveryController {
     }
     
     @PostMapping
-    public ResponseEntity<?> createDelivery(@Valid @RequestBody MilkDeliveryDTO deliveryDTO) {
+    public ResponseEntity<?> createDelivery(@Valid @RequestBody MilkDeliveryDTO deliveryDTO,
+                                            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("deliveries", idempotencyKey, deliveryDTO, () -> {
+            try {
+                MilkDeliveryDTO createdDelivery = milkDeliveryService.createDelivery(deliveryDTO);
+                return ResponseEntity.status(HttpStatus.CREATED).body(createdDelivery);
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Error: " + e.getMessage());
+            }
+        });
+    }
+    
+    // Creates the day's deliveries for all active customers; safe to repeat, existing deliveries are kept
+    @PostMapping("/run")
+    public ResponseEntity<?> generateDailyRun(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
         try {
-            MilkDeliveryDTO createdDelivery = milkDeliveryService.createDelivery(deliveryDTO);
-            return ResponseEntity.status(HttpStatus.CREATED).body(createdDelivery);
+            DeliveryRunResultDTO result = milkDeliveryService.generateDailyRun(date != null ? date : LocalDate.now());
+            return ResponseEntity.ok(result);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body("Error: " + e.getMessage());
         } catch (Exception e) {
@@ -1,13 +1,19 @@
 package com.milkmanagement.controller;
 
 import com.milkmanagement.dto.OrderDTO;
+import com.milkmanagement.dto.OrderIntakeStatusDTO;
+import com.milkmanagement.service.IdempotencyService;
+import com.milkmanagement.service.OrderIntakeService;
 import com.milkmanagement.service.OrderService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -18,16 +24,45 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
     
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    // Present only when orders.intake.enabled=true
+    @Autowired(required = false)
+    private OrderIntakeService orderIntakeService;
+    
     @PostMapping
-    public ResponseEntity<?> createOrder(@Valid @RequestBody OrderDTO orderDTO) {
+    public ResponseEntity<?> createOrder(@Valid @RequestBody OrderDTO orderDTO,
+                                         @RequestHeader(value = "Prefer", required = false) String prefer,
+                                         @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                         Authentication authentication) {
+        if (orderIntakeService != null && prefer != null && prefer.contains("respond-async")) {
+            // The intake journals the order at once, so it must not run inside the claim transaction
+            return idempotencyService.executeOutsideTransaction("orders", idempotencyKey, orderDTO,
+                    () -> enqueueOrder(orderDTO, authentication));
+        }
+        return idempotencyService.execute("orders", idempotencyKey, orderDTO, () -> {
+            try {
+                OrderDTO createdOrder = orderService.createOrder(orderDTO);
+                return ResponseEntity.status(HttpStatus.CREATED).body(createdOrder);
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Error: " + e.getMessage());
+            }
+        });
+    }
+    
+    @GetMapping("/{reference}/status")
+    public ResponseEntity<OrderIntakeStatusDTO> getIntakeStatus(@PathVariable String reference) {
+        if (orderIntakeService == null) {
+            return ResponseEntity.notFound().build();
+        }
         try {
-            OrderDTO createdOrder = orderService.createOrder(orderDTO);
-            return ResponseEntity.status(HttpStatus.CREATED).body(createdOrder);
+            return ResponseEntity.ok(orderIntakeService.getStatus(reference));
         } catch (RuntimeException e) {
-            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Error: " + e.getMessage());
+            return ResponseEntity.notFound().build();
         }
     }
     
@@ -72,4 +107,21 @@ public class OrderController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+    
+    private ResponseEntity<?> enqueueOrder(OrderDTO orderDTO, Authentication authentication) {
+        try {
+            String username = authentication != null ? authentication.getName() : null;
+            OrderIntakeStatusDTO status = orderIntakeService.enqueue(orderDTO, username);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/orders/" + status.getReference() + "/status"))
+                    .body(status);
+        } catch (IllegalStateException e) {
+            // Queue full or shutting down: nothing was taken, the client retries later
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Error: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
 }
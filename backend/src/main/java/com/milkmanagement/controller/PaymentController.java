@@ -1,6 +1,7 @@
 package com.milkmanagement.controller;
 
 import com.milkmanagement.dto.PaymentDTO;
+import com.milkmanagement.service.IdempotencyService;
 import com.milkmanagement.service.PaymentService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +19,9 @@ public class PaymentController {
     @Autowired
     private PaymentService paymentService;
     
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
     @GetMapping
     public ResponseEntity<List<PaymentDTO>> getAllPayments() {
         try {
@@ -51,16 +55,19 @@ public class PaymentController {
     }
     
     @PostMapping
-    public ResponseEntity<?> createPayment(@Valid @RequestBody PaymentDTO paymentDTO) {
-        try {
-            PaymentDTO createdPayment = paymentService.createPayment(paymentDTO);
-            return ResponseEntity.status(HttpStatus.CREATED).body(createdPayment);
-        } catch (RuntimeException e) {
-            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Error: " + e.getMessage());
-        }
+    public ResponseEntity<?> createPayment(@Valid @RequestBody PaymentDTO paymentDTO,
+                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("payments", idempotencyKey, paymentDTO, () -> {
+            try {
+                PaymentDTO createdPayment = paymentService.createPayment(paymentDTO);
+                return ResponseEntity.status(HttpStatus.CREATED).body(createdPayment);
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Error: " + e.getMessage());
+            }
+        });
     }
     
     @PutMapping("/{id}")
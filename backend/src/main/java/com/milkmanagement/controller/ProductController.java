@@ -1,10 +1,16 @@
 package com.milkmanagement.controller;
 
+import com.milkmanagement.cache.ResourceVersions.Resource;
 import com.milkmanagement.dto.ProductDTO;
 import com.milkmanagement.dto.ProductQuantityDTO;
 import com.milkmanagement.service.ProductService;
+import com.milkmanagement.web.VersionedResource;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,34 +23,59 @@ import java.util.List;
 @RequestMapping("/api/products")
 public class ProductController {
     
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    
     @Autowired
     private ProductService productService;
     
     @GetMapping
+    @VersionedResource(Resource.PRODUCTS)
     public ResponseEntity<List<ProductDTO>> getAllProducts(
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String name,
+            @RequestParam(required = false) String category,
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
-            @RequestParam(required = false) String type) {
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size) {
         try {
             List<ProductDTO> products;
+            long totalCount;
             
             if (search != null && !search.trim().isEmpty()) {
                 products = productService.searchProducts(search);
-            } else if (name != null || minPrice != null || maxPrice != null || type != null) {
-                products = productService.filterProducts(name, minPrice, maxPrice, type);
+                totalCount = products.size();
+            } else if (name != null || category != null || minPrice != null || maxPrice != null || type != null
+                    || page != null || size != null) {
+                // Without page/size every match is returned, as before
+                Pageable pageable = page != null || size != null
+                        ? PageRequest.of(page != null ? page : 0,
+                                Math.min(size != null ? size : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE),
+                                Sort.by("id"))
+                        : Pageable.unpaged();
+                Page<ProductDTO> result = productService.filterProducts(name, category, minPrice, maxPrice, type, pageable);
+                products = result.getContent();
+                totalCount = result.getTotalElements();
             } else {
                 products = productService.getAllProducts();
+                totalCount = products.size();
             }
             
-            return ResponseEntity.ok(products);
+            return ResponseEntity.ok()
+                    .header(TOTAL_COUNT_HEADER, Long.toString(totalCount))
+                    .body(products);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
     @GetMapping("/count")
+    @VersionedResource(Resource.PRODUCTS)
     public ResponseEntity<Long> getProductCount() {
         try {
             Long count = productService.getProductCount();
@@ -55,6 +86,7 @@ public class ProductController {
     }
     
     @GetMapping("/quantities")
+    @VersionedResource(Resource.PRODUCTS)
     public ResponseEntity<ProductQuantityDTO> getProductQuantities() {
         try {
             ProductQuantityDTO quantities = productService.getProductQuantities();
@@ -86,6 +118,7 @@ public class ProductController {
     }
     
     @GetMapping("/{id}")
+    @VersionedResource(Resource.PRODUCTS)
     public ResponseEntity<ProductDTO> getProductById(@PathVariable Long id) {
         try {
             ProductDTO product = productService.getProductById(id);
@@ -0,0 +1,18 @@
+package com.milkmanagement.dto;
+
+import com.milkmanagement.entity.Customer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// What an active customer gets each day; read without loading Customer entities
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerDeliveryPlanDTO {
+    private Long customerId;
+    private Customer.MilkType milkType;
+    private BigDecimal dailyMilkQuantity;
+}
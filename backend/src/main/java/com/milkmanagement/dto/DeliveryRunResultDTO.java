@@ -0,0 +1,21 @@
+package com.milkmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryRunResultDTO {
+    private LocalDate date;
+    private int activeCustomers;
+    private long deliveriesCreated;
+    private long alreadyRecorded; // Planned deliveries that existed for the date before the run
+    private int skipped; // Planned deliveries with no product of the milk type, or no price on the date
+    private BigDecimal totalQuantity; // Of the deliveries created by this run
+    private BigDecimal totalAmount;
+}
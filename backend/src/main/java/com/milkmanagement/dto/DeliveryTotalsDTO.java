@@ -0,0 +1,16 @@
+package com.milkmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryTotalsDTO {
+    private BigDecimal totalAmount;
+    private BigDecimal totalQuantity;
+    private Long deliveryCount;
+}
@@ -0,0 +1,21 @@
+package com.milkmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryAggregateDTO {
+    private Long productId;
+    private String productName;
+    private LocalDate periodStart;
+    private LocalDate periodEnd;
+    private BigDecimal totalLitres;
+    private BigDecimal averagePricePerLitre; // Weighted by litres received
+    private Long entryCount;
+}
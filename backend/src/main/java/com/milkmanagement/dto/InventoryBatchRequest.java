@@ -0,0 +1,20 @@
+package com.milkmanagement.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryBatchRequest {
+
+    @NotEmpty(message = "At least one entry is required")
+    @Size(max = 1000, message = "At most 1000 entries per batch")
+    private List<@Valid InventoryUpdateRequest> entries;
+}
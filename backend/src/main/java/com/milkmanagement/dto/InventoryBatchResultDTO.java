@@ -0,0 +1,15 @@
+package com.milkmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryBatchResultDTO {
+    private int entriesCreated;
+    private List<InventoryStatusDTO> products; // One per product in the batch, by product id
+}
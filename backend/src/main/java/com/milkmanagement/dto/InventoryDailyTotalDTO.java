@@ -0,0 +1,19 @@
+package com.milkmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryDailyTotalDTO {
+    private Long productId;
+    private LocalDate entryDate;
+    private BigDecimal litres;
+    private BigDecimal cost; // Sum of litres x price per litre
+    private Long entryCount;
+}
@@ -0,0 +1,15 @@
+package com.milkmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryEntryPageDTO {
+    private List<InventoryEntryDTO> entries;
+    private String nextCursor; // Null on the last page
+}
@@ -19,5 +19,5 @@ public class OrderDTO {
     private BigDecimal totalAmount;
     private String status;
     private LocalDateTime orderDate;
-    private Object paymentData;
+    private RawJson paymentData; // Passed through as stored, never parsed into maps
 }
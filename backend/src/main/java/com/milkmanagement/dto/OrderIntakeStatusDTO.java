@@ -0,0 +1,19 @@
+package com.milkmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderIntakeStatusDTO {
+    private String reference;
+    private String status; // QUEUED, CREATED or REJECTED
+    private Long orderId; // Set once CREATED
+    private String error; // Set once REJECTED
+    private LocalDateTime receivedAt;
+    private LocalDateTime completedAt;
+}
@@ -1,5 +1,6 @@
 package com.milkmanagement.dto;
 
+import com.milkmanagement.entity.Product;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -40,4 +41,20 @@ public class ProductDTO {
     private BigDecimal minOrderQuantity;
     
     private String imageUrl;
+    
+    // Used by the catalog projection query; missing stock or price rows come back as null
+    public ProductDTO(Long id, String name, Product.ProductType type, String category, BigDecimal quantity,
+                      BigDecimal pricePerUnit, String unit, String description, BigDecimal minOrderQuantity,
+                      String imageUrl) {
+        this.id = id;
+        this.name = name;
+        this.type = type != null ? type.name() : null;
+        this.category = category;
+        this.quantity = quantity != null ? quantity : BigDecimal.ZERO;
+        this.pricePerUnit = pricePerUnit != null ? pricePerUnit : BigDecimal.ZERO;
+        this.unit = unit;
+        this.description = description;
+        this.minOrderQuantity = minOrderQuantity;
+        this.imageUrl = imageUrl;
+    }
 }
@@ -0,0 +1,16 @@
+package com.milkmanagement.dto;
+
+import com.milkmanagement.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductTypeQuantityDTO {
+    private Product.ProductType type;
+    private BigDecimal quantity;
+}
@@ -0,0 +1,92 @@
+package com.milkmanagement.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * A JSON value carried as its text. It is written to responses verbatim and
+ * read from requests by copying tokens, so a value that is only stored and
+ * returned (such as an order's payment data) is never turned into maps and
+ * back. Server code that needs a field calls tree(), which parses once.
+ */
+@JsonSerialize(using = RawJson.Serializer.class)
+@JsonDeserialize(using = RawJson.Deserializer.class)
+public final class RawJson {
+    
+    private static final ObjectMapper TREE_READER = new ObjectMapper();
+    
+    private final String json;
+    private volatile JsonNode tree;
+    
+    private RawJson(String json) {
+        this.json = json;
+    }
+    
+    // The text must be valid JSON; it is not checked here
+    public static RawJson of(String json) {
+        return json != null ? new RawJson(json) : null;
+    }
+    
+    public String json() {
+        return json;
+    }
+    
+    public JsonNode tree() {
+        JsonNode parsed = tree;
+        if (parsed == null) {
+            try {
+                parsed = TREE_READER.readTree(json);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Stored JSON is not valid", e);
+            }
+            tree = parsed;
+        }
+        return parsed;
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RawJson raw && json.equals(raw.json);
+    }
+    
+    @Override
+    public int hashCode() {
+        return json.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return json;
+    }
+    
+    public static class Serializer extends JsonSerializer<RawJson> {
+        @Override
+        public void serialize(RawJson value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeRawValue(value.json);
+        }
+    }
+    
+    public static class Deserializer extends JsonDeserializer<RawJson> {
+        @Override
+        public RawJson deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            // Copies the value's tokens straight into compact text, without building a tree
+            StringWriter json = new StringWriter();
+            try (JsonGenerator copy = parser.getCodec().getFactory().createGenerator(json)) {
+                copy.copyCurrentStructure(parser);
+            }
+            return new RawJson(json.toString());
+        }
+    }
+}
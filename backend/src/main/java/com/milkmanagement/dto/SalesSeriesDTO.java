@@ -0,0 +1,19 @@
+package com.milkmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesSeriesDTO {
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private String granularity; // DAY, WEEK, MONTH
+    private String groupBy; // NONE, PRODUCT, MILK_TYPE
+    private List<SalesSeriesPointDTO> points;
+}
@@ -0,0 +1,21 @@
+package com.milkmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesSeriesPointDTO {
+    private LocalDate bucketStart;
+    private LocalDate bucketEnd;
+    private String key; // product name or type when the series is split, otherwise null
+    private BigDecimal revenue;
+    private BigDecimal quantity;
+    private Long deliveryCount;
+    private BigDecimal payments; // only when not split: payments are not tied to a product
+}
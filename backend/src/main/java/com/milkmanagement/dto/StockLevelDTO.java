@@ -0,0 +1,18 @@
+package com.milkmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLevelDTO {
+    private Long productId;
+    private LocalDateTime at;
+    private BigDecimal quantity;
+    private LocalDateTime snapshotTakenAt; // Snapshot the quantity was computed from, null before the first one
+}
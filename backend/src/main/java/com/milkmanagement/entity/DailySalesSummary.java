@@ -0,0 +1,61 @@
+package com.milkmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Daily rollup of deliveries and payments, maintained alongside the raw rows.
+ * A productId or customerId of 0 means "all": (date, product, 0) rows hold the
+ * delivery totals per product, (date, 0, 0) holds the payments of the day, and
+ * rows with a real customerId are the optional per-customer breakdown.
+ */
+@Entity
+@Table(name = "daily_sales_summary",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"summary_date", "product_id", "customer_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailySalesSummary {
+    
+    public static final Long ALL = 0L;
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "summary_date", nullable = false)
+    private LocalDate summaryDate;
+    
+    @Column(name = "product_id", nullable = false)
+    private Long productId = ALL;
+    
+    @Column(name = "customer_id", nullable = false)
+    private Long customerId = ALL;
+    
+    @Column(name = "delivered_quantity", nullable = false, precision = 14, scale = 2)
+    private BigDecimal deliveredQuantity = BigDecimal.ZERO;
+    
+    @Column(name = "delivered_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal deliveredAmount = BigDecimal.ZERO;
+    
+    @Column(name = "payment_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal paymentAmount = BigDecimal.ZERO;
+    
+    @Column(name = "delivery_count", nullable = false)
+    private Long deliveryCount = 0L;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
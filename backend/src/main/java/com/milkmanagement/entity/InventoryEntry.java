@@ -10,7 +10,8 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "inventory_entries")
+@Table(name = "inventory_entries",
+       indexes = @Index(name = "idx_inventory_entries_product_date", columnList = "product_id, entry_date"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -17,8 +17,11 @@ import java.util.List;
 @AllArgsConstructor
 public class Order {
     
+    // Table-generated in blocks so inserts can be batched; IDENTITY forces one round trip per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_id")
+    @TableGenerator(name = "order_id", table = "id_generators", pkColumnName = "sequence_name",
+                    valueColumnName = "next_val", pkColumnValue = "orders", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -45,6 +48,10 @@ public class Order {
     @Column(name = "payment_data", columnDefinition = "JSON")
     private String paymentData;
     
+    // Async intake submission that created the order, so a restarted intake can tell it already committed
+    @Column(name = "intake_reference", length = 36, unique = true)
+    private String intakeReference;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
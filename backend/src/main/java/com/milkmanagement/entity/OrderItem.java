@@ -14,8 +14,11 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 public class OrderItem {
     
+    // Table-generated in blocks so inserts can be batched; IDENTITY forces one round trip per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_item_id")
+    @TableGenerator(name = "order_item_id", table = "id_generators", pkColumnName = "sequence_name",
+                    valueColumnName = "next_val", pkColumnValue = "order_items", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
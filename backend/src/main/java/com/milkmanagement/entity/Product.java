@@ -9,7 +9,8 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products",
+       indexes = @Index(name = "idx_products_type", columnList = "product_type"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -31,6 +32,10 @@ public class Product {
     @Column(name = "category", length = 50)
     private String category;
     
+    @Enumerated(EnumType.STRING)
+    @Column(name = "product_type", length = 20)
+    private ProductType type;
+    
     @Column(name = "min_order_quantity", precision = 10, scale = 2)
     private BigDecimal minOrderQuantity;
     
@@ -43,6 +48,10 @@ public class Product {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    public enum ProductType {
+        COW_MILK, BUFFALO_MILK, CURD
+    }
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
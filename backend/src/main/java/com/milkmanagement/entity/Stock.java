@@ -29,6 +29,10 @@ public class Stock {
     @Column(name = "last_updated")
     private LocalDateTime lastUpdated;
     
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+    
     @PrePersist
     @PreUpdate
     protected void onUpdate() {
@@ -0,0 +1,32 @@
+package com.milkmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Highest stock journal sequence whose delta has been written to the stock
+ * table. Updated in the same transaction as the write-behind UPDATEs, so on
+ * restart only journal entries after it are replayed.
+ */
+@Entity
+@Table(name = "stock_journal_checkpoint")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockJournalCheckpoint {
+    
+    public static final Long SINGLETON_ID = 1L;
+    
+    @Id
+    private Long id;
+    
+    @Column(name = "last_sequence", nullable = false)
+    private Long lastSequence;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,60 @@
+package com.milkmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One signed change to a product's stock. Rows are only ever inserted; the
+ * quantity at any moment is the latest StockSnapshot before it plus the
+ * movements recorded after that snapshot.
+ */
+@Entity
+@Table(name = "stock_movements",
+       indexes = {
+           @Index(name = "idx_stock_movements_product_id", columnList = "product_id, id"),
+           @Index(name = "idx_stock_movements_product_time", columnList = "product_id, occurred_at")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovement {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    
+    @Column(name = "quantity_delta", nullable = false, precision = 10, scale = 2)
+    private BigDecimal quantityDelta;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reason", nullable = false, length = 20)
+    private Reason reason;
+    
+    // Inventory entry or order the movement came from, when there is one
+    @Column(name = "reference_id")
+    private Long referenceId;
+    
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+    
+    public StockMovement(Long productId, BigDecimal quantityDelta, Reason reason, Long referenceId,
+                         LocalDateTime occurredAt) {
+        this.productId = productId;
+        this.quantityDelta = quantityDelta;
+        this.reason = reason;
+        this.referenceId = referenceId;
+        this.occurredAt = occurredAt;
+    }
+    
+    public enum Reason {
+        RECEIPT, RECEIPT_BATCH, RECEIPT_EDIT, RECEIPT_DELETE, ORDER, ADJUSTMENT
+    }
+}
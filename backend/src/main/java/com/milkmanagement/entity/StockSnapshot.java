@@ -0,0 +1,40 @@
+package com.milkmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A product's stock quantity as of takenAt, covering every movement up to and
+ * including lastMovementId. Taken daily and after every
+ * stock.snapshot.every-movements movements of a product.
+ */
+@Entity
+@Table(name = "stock_snapshots",
+       indexes = @Index(name = "idx_stock_snapshots_product_time", columnList = "product_id, taken_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockSnapshot {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    
+    @Column(name = "quantity", nullable = false, precision = 10, scale = 2)
+    private BigDecimal quantity;
+    
+    // 0 when the product had no movements yet
+    @Column(name = "last_movement_id", nullable = false)
+    private Long lastMovementId;
+    
+    @Column(name = "taken_at", nullable = false)
+    private LocalDateTime takenAt;
+}
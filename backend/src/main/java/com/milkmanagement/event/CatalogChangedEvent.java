@@ -0,0 +1,42 @@
+package com.milkmanagement.event;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Published whenever a write changes a product, its stock or its active price.
+ * Listeners use AFTER_COMMIT so the in-memory catalog is only refreshed from
+ * committed data.
+ */
+public class CatalogChangedEvent {
+    
+    private final Set<Long> productIds;
+    
+    // False when the write is known not to touch product_prices, e.g. stock movements
+    private final boolean pricesChanged;
+    
+    private CatalogChangedEvent(Set<Long> productIds, boolean pricesChanged) {
+        this.productIds = productIds;
+        this.pricesChanged = pricesChanged;
+    }
+    
+    public static CatalogChangedEvent products(Collection<Long> productIds) {
+        return new CatalogChangedEvent(Set.copyOf(productIds), true);
+    }
+    
+    public static CatalogChangedEvent product(Long productId) {
+        return new CatalogChangedEvent(Set.of(productId), true);
+    }
+    
+    public static CatalogChangedEvent pricesUnchanged(Collection<Long> productIds) {
+        return new CatalogChangedEvent(Set.copyOf(productIds), false);
+    }
+    
+    public Set<Long> getProductIds() {
+        return productIds;
+    }
+    
+    public boolean isPricesChanged() {
+        return pricesChanged;
+    }
+}
@@ -0,0 +1,105 @@
+package com.milkmanagement.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Published by the delivery, payment and customer services whenever they write
+ * data that feeds the dashboard. Listeners use AFTER_COMMIT so they only ever
+ * observe committed changes. The deltas describe the effect of the write on
+ * the all-time dashboard totals.
+ */
+public class DashboardDataChangedEvent {
+    
+    public enum Source {
+        DELIVERY, PAYMENT, CUSTOMER, SUMMARY_REBUILD
+    }
+    
+    private final Source source;
+    
+    // Business dates touched by the write; empty when the change is not date-bound
+    private final Set<LocalDate> dates;
+    
+    private final BigDecimal revenueDelta;
+    private final BigDecimal quantityDelta;
+    private final long deliveryCountDelta;
+    private final BigDecimal paymentDelta;
+    private final long customerDelta;
+    private final long activeCustomerDelta;
+    
+    private DashboardDataChangedEvent(Source source, Set<LocalDate> dates,
+                                      BigDecimal revenueDelta, BigDecimal quantityDelta, long deliveryCountDelta,
+                                      BigDecimal paymentDelta, long customerDelta, long activeCustomerDelta) {
+        this.source = source;
+        this.dates = dates;
+        this.revenueDelta = revenueDelta;
+        this.quantityDelta = quantityDelta;
+        this.deliveryCountDelta = deliveryCountDelta;
+        this.paymentDelta = paymentDelta;
+        this.customerDelta = customerDelta;
+        this.activeCustomerDelta = activeCustomerDelta;
+    }
+    
+    public static DashboardDataChangedEvent delivery(LocalDate deliveryDate, BigDecimal totalAmount, BigDecimal quantity) {
+        return deliveries(Set.of(deliveryDate), totalAmount, quantity, 1);
+    }
+    
+    public static DashboardDataChangedEvent deliveries(Set<LocalDate> deliveryDates, BigDecimal totalAmount,
+                                                       BigDecimal quantity, long count) {
+        return new DashboardDataChangedEvent(Source.DELIVERY, Set.copyOf(deliveryDates),
+                totalAmount, quantity, count, BigDecimal.ZERO, 0, 0);
+    }
+    
+    public static DashboardDataChangedEvent payment(BigDecimal amountDelta, LocalDate... paymentDates) {
+        return new DashboardDataChangedEvent(Source.PAYMENT, Set.copyOf(java.util.Arrays.asList(paymentDates)),
+                BigDecimal.ZERO, BigDecimal.ZERO, 0, amountDelta, 0, 0);
+    }
+    
+    public static DashboardDataChangedEvent customer(long customerDelta, long activeCustomerDelta) {
+        return new DashboardDataChangedEvent(Source.CUSTOMER, Set.of(),
+                BigDecimal.ZERO, BigDecimal.ZERO, 0, BigDecimal.ZERO, customerDelta, activeCustomerDelta);
+    }
+    
+    public static DashboardDataChangedEvent summaryRebuilt() {
+        return new DashboardDataChangedEvent(Source.SUMMARY_REBUILD, Set.of(),
+                BigDecimal.ZERO, BigDecimal.ZERO, 0, BigDecimal.ZERO, 0, 0);
+    }
+    
+    // Customer counts and rebuilt totals affect every date range
+    public boolean affectsAllDates() {
+        return source == Source.CUSTOMER || source == Source.SUMMARY_REBUILD;
+    }
+    
+    public Source getSource() {
+        return source;
+    }
+    
+    public Set<LocalDate> getDates() {
+        return dates;
+    }
+    
+    public BigDecimal getRevenueDelta() {
+        return revenueDelta;
+    }
+    
+    public BigDecimal getQuantityDelta() {
+        return quantityDelta;
+    }
+    
+    public long getDeliveryCountDelta() {
+        return deliveryCountDelta;
+    }
+    
+    public BigDecimal getPaymentDelta() {
+        return paymentDelta;
+    }
+    
+    public long getCustomerDelta() {
+        return customerDelta;
+    }
+    
+    public long getActiveCustomerDelta() {
+        return activeCustomerDelta;
+    }
+}
@@ -1,8 +1,11 @@
 package com.milkmanagement.repository;
 
+import com.milkmanagement.dto.CustomerDeliveryPlanDTO;
 import com.milkmanagement.entity.Customer;
 import com.milkmanagement.entity.Customer.DeliveryStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,6 +13,11 @@ import java.util.List;
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
     List<Customer> findByDeliveryStatus(DeliveryStatus status);
+    long countByDeliveryStatus(DeliveryStatus status);
     boolean existsByMobileNumber(String mobileNumber);
     boolean existsByEmail(String email);
+    
+    @Query("SELECT new com.milkmanagement.dto.CustomerDeliveryPlanDTO(c.id, c.milkType, c.dailyMilkQuantity) " +
+           "FROM Customer c WHERE c.deliveryStatus = :status ORDER BY c.id")
+    List<CustomerDeliveryPlanDTO> findDeliveryPlans(@Param("status") DeliveryStatus status);
 }
@@ -0,0 +1,132 @@
+package com.milkmanagement.repository;
+
+import com.milkmanagement.dto.DeliveryTotalsDTO;
+import com.milkmanagement.entity.DailySalesSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailySalesSummaryRepository extends JpaRepository<DailySalesSummary, Long> {
+    
+    // Adds the given deltas to the (date, product, customer) row, creating it on first use
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_summary " +
+                   "(summary_date, product_id, customer_id, delivered_quantity, delivered_amount, payment_amount, delivery_count, updated_at) " +
+                   "VALUES (:date, :productId, :customerId, :quantity, :amount, :payment, :count, NOW()) " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   "delivered_quantity = delivered_quantity + VALUES(delivered_quantity), " +
+                   "delivered_amount = delivered_amount + VALUES(delivered_amount), " +
+                   "payment_amount = payment_amount + VALUES(payment_amount), " +
+                   "delivery_count = delivery_count + VALUES(delivery_count), " +
+                   "updated_at = NOW()",
+           nativeQuery = true)
+    int applyDelta(@Param("date") LocalDate date,
+                   @Param("productId") Long productId,
+                   @Param("customerId") Long customerId,
+                   @Param("quantity") BigDecimal quantity,
+                   @Param("amount") BigDecimal amount,
+                   @Param("payment") BigDecimal payment,
+                   @Param("count") long count);
+    
+    // Either bound may be null to leave that side of the range open
+    @Query("SELECT new com.milkmanagement.dto.DeliveryTotalsDTO(SUM(s.deliveredAmount), SUM(s.deliveredQuantity), SUM(s.deliveryCount)) " +
+           "FROM DailySalesSummary s " +
+           "WHERE s.customerId = 0 AND s.productId <> 0 " +
+           "AND (:fromDate IS NULL OR s.summaryDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR s.summaryDate <= :toDate)")
+    DeliveryTotalsDTO getDeliveryTotals(@Param("fromDate") LocalDate fromDate,
+                                        @Param("toDate") LocalDate toDate);
+    
+    @Query("SELECT SUM(s.paymentAmount) FROM DailySalesSummary s " +
+           "WHERE s.customerId = 0 AND s.productId = 0 " +
+           "AND (:fromDate IS NULL OR s.summaryDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR s.summaryDate <= :toDate)")
+    BigDecimal getPaymentTotal(@Param("fromDate") LocalDate fromDate,
+                               @Param("toDate") LocalDate toDate);
+    
+    List<DailySalesSummary> findByCustomerIdAndSummaryDateBetween(Long customerId, LocalDate fromDate, LocalDate toDate);
+    
+    @Modifying
+    @Query(value = "DELETE FROM daily_sales_summary", nativeQuery = true)
+    int deleteAllRows();
+    
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_summary " +
+                   "(summary_date, product_id, customer_id, delivered_quantity, delivered_amount, payment_amount, delivery_count, updated_at) " +
+                   "SELECT delivery_date, product_id, 0, SUM(quantity_delivered), SUM(total_amount), 0, COUNT(*), NOW() " +
+                   "FROM milk_deliveries GROUP BY delivery_date, product_id",
+           nativeQuery = true)
+    int insertDeliveryTotalsFromDeliveries();
+    
+    @Modifying
+    @Query(value = "DELETE FROM daily_sales_summary WHERE summary_date = :date", nativeQuery = true)
+    int deleteRowsForDate(@Param("date") LocalDate date);
+    
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_summary " +
+                   "(summary_date, product_id, customer_id, delivered_quantity, delivered_amount, payment_amount, delivery_count, updated_at) " +
+                   "SELECT payment_date, 0, 0, 0, 0, SUM(amount), 0, NOW() " +
+                   "FROM payments WHERE payment_date = :date GROUP BY payment_date",
+           nativeQuery = true)
+    int insertPaymentTotalsForDate(@Param("date") LocalDate date);
+    
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_summary " +
+                   "(summary_date, product_id, customer_id, delivered_quantity, delivered_amount, payment_amount, delivery_count, updated_at) " +
+                   "SELECT payment_date, 0, customer_id, 0, 0, SUM(amount), 0, NOW() " +
+                   "FROM payments WHERE payment_date = :date GROUP BY payment_date, customer_id",
+           nativeQuery = true)
+    int insertCustomerPaymentTotalsForDate(@Param("date") LocalDate date);
+    
+    // Delivery rows of one date (product_id 0 holds payments), for regenerating that date alone
+    @Modifying
+    @Query(value = "DELETE FROM daily_sales_summary WHERE summary_date = :date AND product_id <> 0", nativeQuery = true)
+    int deleteDeliveryRowsForDate(@Param("date") LocalDate date);
+    
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_summary " +
+                   "(summary_date, product_id, customer_id, delivered_quantity, delivered_amount, payment_amount, delivery_count, updated_at) " +
+                   "SELECT delivery_date, product_id, 0, SUM(quantity_delivered), SUM(total_amount), 0, COUNT(*), NOW() " +
+                   "FROM milk_deliveries WHERE delivery_date = :date GROUP BY delivery_date, product_id",
+           nativeQuery = true)
+    int insertDeliveryTotalsForDate(@Param("date") LocalDate date);
+    
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_summary " +
+                   "(summary_date, product_id, customer_id, delivered_quantity, delivered_amount, payment_amount, delivery_count, updated_at) " +
+                   "SELECT delivery_date, product_id, customer_id, SUM(quantity_delivered), SUM(total_amount), 0, COUNT(*), NOW() " +
+                   "FROM milk_deliveries WHERE delivery_date = :date GROUP BY delivery_date, product_id, customer_id",
+           nativeQuery = true)
+    int insertCustomerDeliveryTotalsForDate(@Param("date") LocalDate date);
+    
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_summary " +
+                   "(summary_date, product_id, customer_id, delivered_quantity, delivered_amount, payment_amount, delivery_count, updated_at) " +
+                   "SELECT payment_date, 0, 0, 0, 0, SUM(amount), 0, NOW() " +
+                   "FROM payments GROUP BY payment_date",
+           nativeQuery = true)
+    int insertPaymentTotalsFromPayments();
+    
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_summary " +
+                   "(summary_date, product_id, customer_id, delivered_quantity, delivered_amount, payment_amount, delivery_count, updated_at) " +
+                   "SELECT delivery_date, product_id, customer_id, SUM(quantity_delivered), SUM(total_amount), 0, COUNT(*), NOW() " +
+                   "FROM milk_deliveries GROUP BY delivery_date, product_id, customer_id",
+           nativeQuery = true)
+    int insertCustomerDeliveryTotalsFromDeliveries();
+    
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_summary " +
+                   "(summary_date, product_id, customer_id, delivered_quantity, delivered_amount, payment_amount, delivery_count, updated_at) " +
+                   "SELECT payment_date, 0, customer_id, 0, 0, SUM(amount), 0, NOW() " +
+                   "FROM payments GROUP BY payment_date, customer_id",
+           nativeQuery = true)
+    int insertCustomerPaymentTotalsFromPayments();
+}
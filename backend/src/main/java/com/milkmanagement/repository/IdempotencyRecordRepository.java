@@ -0,0 +1,42 @@
+package com.milkmanagement.repository;
+
+import com.milkmanagement.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+    
+    // Plain INSERT so a key already claimed fails right away with a duplicate key error
+    // (or waits for the transaction holding an uncommitted claim)
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (record_key, request_hash, created_at, expires_at) " +
+                   "VALUES (:recordKey, :requestHash, :createdAt, :expiresAt)", nativeQuery = true)
+    int claim(@Param("recordKey") String recordKey, @Param("requestHash") String requestHash,
+              @Param("createdAt") LocalDateTime createdAt, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    @Modifying
+    @Query(value = "UPDATE idempotency_keys SET status_code = :statusCode, response_body = :responseBody, " +
+                   "location = :location WHERE record_key = :recordKey", nativeQuery = true)
+    int storeResponse(@Param("recordKey") String recordKey, @Param("statusCode") int statusCode,
+                      @Param("responseBody") String responseBody, @Param("location") String location);
+    
+    // Frees a claim that never got a response
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE record_key = :recordKey AND status_code IS NULL", nativeQuery = true)
+    int release(@Param("recordKey") String recordKey);
+    
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE record_key = :recordKey AND expires_at < :now", nativeQuery = true)
+    int deleteIfExpired(@Param("recordKey") String recordKey, @Param("now") LocalDateTime now);
+    
+    // Bounded so the sweep never holds locks on a large range of rows
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE expires_at < :now LIMIT :limit", nativeQuery = true)
+    int deleteExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
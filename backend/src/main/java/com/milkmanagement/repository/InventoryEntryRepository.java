@@ -1,7 +1,9 @@
 package com.milkmanagement.repository;
 
+import com.milkmanagement.dto.InventoryDailyTotalDTO;
 import com.milkmanagement.entity.InventoryEntry;
 import com.milkmanagement.entity.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,7 +11,6 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface InventoryEntryRepository extends JpaRepository<InventoryEntry, Long> {
@@ -17,10 +18,38 @@ public interface InventoryEntryRepository extends JpaRepository<InventoryEntry,
     List<InventoryEntry> findByEntryDate(LocalDate date);
     List<InventoryEntry> findByProductAndEntryDate(Product product, LocalDate date);
     
-    @Query("SELECT ie FROM InventoryEntry ie ORDER BY ie.entryDate DESC, ie.createdAt DESC")
-    List<InventoryEntry> findAllOrderByDateDesc();
+    // Keyset pages, newest first: a page continues after the (entryDate, id) of the previous page's last entry.
+    // Pass (toDate, Long.MAX_VALUE) for the first page; the Pageable only carries the page size
+    @Query("SELECT ie FROM InventoryEntry ie JOIN FETCH ie.product " +
+           "WHERE ie.entryDate BETWEEN :fromDate AND :toDate " +
+           "AND (ie.entryDate < :afterDate OR (ie.entryDate = :afterDate AND ie.id < :afterId)) " +
+           "ORDER BY ie.entryDate DESC, ie.id DESC")
+    List<InventoryEntry> findPage(@Param("fromDate") LocalDate fromDate,
+                                  @Param("toDate") LocalDate toDate,
+                                  @Param("afterDate") LocalDate afterDate,
+                                  @Param("afterId") Long afterId,
+                                  Pageable page);
     
-    @Query("SELECT ie FROM InventoryEntry ie WHERE ie.product = :product ORDER BY ie.entryDate DESC, ie.createdAt DESC")
-    List<InventoryEntry> findByProductOrderByDateDesc(@Param("product") Product product);
+    // Range scan on (product_id, entry_date)
+    @Query("SELECT ie FROM InventoryEntry ie JOIN FETCH ie.product " +
+           "WHERE ie.product.id = :productId AND ie.entryDate BETWEEN :fromDate AND :toDate " +
+           "AND (ie.entryDate < :afterDate OR (ie.entryDate = :afterDate AND ie.id < :afterId)) " +
+           "ORDER BY ie.entryDate DESC, ie.id DESC")
+    List<InventoryEntry> findPageByProduct(@Param("productId") Long productId,
+                                           @Param("fromDate") LocalDate fromDate,
+                                           @Param("toDate") LocalDate toDate,
+                                           @Param("afterDate") LocalDate afterDate,
+                                           @Param("afterId") Long afterId,
+                                           Pageable page);
+    
+    // Litres and purchase cost per product and day; callers fold days into weeks or months
+    @Query("SELECT new com.milkmanagement.dto.InventoryDailyTotalDTO(ie.product.id, ie.entryDate, " +
+           "SUM(ie.totalLitersReceived), SUM(ie.totalLitersReceived * ie.pricePerLitre), COUNT(ie)) " +
+           "FROM InventoryEntry ie " +
+           "WHERE ie.entryDate BETWEEN :fromDate AND :toDate " +
+           "AND (:productId IS NULL OR ie.product.id = :productId) " +
+           "GROUP BY ie.product.id, ie.entryDate")
+    List<InventoryDailyTotalDTO> sumByProductAndDay(@Param("fromDate") LocalDate fromDate,
+                                                    @Param("toDate") LocalDate toDate,
+                                                    @Param("productId") Long productId);
 }
-
@@ -1,5 +1,6 @@
 package com.milkmanagement.repository;
 
+import com.milkmanagement.dto.DeliveryTotalsDTO;
 import com.milkmanagement.entity.Customer;
 import com.milkmanagement.entity.MilkDelivery;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -22,4 +23,27 @@ public interface MilkDeliveryRepository extends JpaRepository<MilkDelivery, Long
     List<MilkDelivery> findDeliveriesByCustomerAndDateRange(@Param("customer") Customer customer,
                                                              @Param("startDate") LocalDate startDate,
                                                              @Param("endDate") LocalDate endDate);
+    
+    // Either bound may be null to leave that side of the range open
+    @Query("SELECT new com.milkmanagement.dto.DeliveryTotalsDTO(SUM(md.totalAmount), SUM(md.quantityDelivered), COUNT(md)) " +
+           "FROM MilkDelivery md " +
+           "WHERE (:fromDate IS NULL OR md.deliveryDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR md.deliveryDate <= :toDate)")
+    DeliveryTotalsDTO getDeliveryTotalsByDateRange(@Param("fromDate") LocalDate fromDate,
+                                                   @Param("toDate") LocalDate toDate);
+    
+    // Totals and dates of the deliveries a customer or product delete cascades to
+    @Query("SELECT new com.milkmanagement.dto.DeliveryTotalsDTO(SUM(md.totalAmount), SUM(md.quantityDelivered), COUNT(md)) " +
+           "FROM MilkDelivery md WHERE md.customer.id = :customerId")
+    DeliveryTotalsDTO getDeliveryTotalsByCustomerId(@Param("customerId") Long customerId);
+    
+    @Query("SELECT new com.milkmanagement.dto.DeliveryTotalsDTO(SUM(md.totalAmount), SUM(md.quantityDelivered), COUNT(md)) " +
+           "FROM MilkDelivery md WHERE md.product.id = :productId")
+    DeliveryTotalsDTO getDeliveryTotalsByProductId(@Param("productId") Long productId);
+    
+    @Query("SELECT DISTINCT md.deliveryDate FROM MilkDelivery md WHERE md.customer.id = :customerId")
+    List<LocalDate> findDeliveryDatesByCustomerId(@Param("customerId") Long customerId);
+    
+    @Query("SELECT DISTINCT md.deliveryDate FROM MilkDelivery md WHERE md.product.id = :productId")
+    List<LocalDate> findDeliveryDatesByProductId(@Param("productId") Long productId);
 }
@@ -4,10 +4,12 @@ import com.milkmanagement.entity.Order;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserId(Long userId);
     List<Order> findByCustomerId(Long customerId);
+    List<Order> findByIntakeReferenceIn(Collection<String> intakeReferences);
 }
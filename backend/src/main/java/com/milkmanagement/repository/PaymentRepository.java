@@ -18,6 +18,9 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.customer = :customer")
     java.math.BigDecimal getTotalPaymentsByCustomer(@Param("customer") Customer customer);
     
+    @Query("SELECT DISTINCT p.paymentDate FROM Payment p WHERE p.customer.id = :customerId")
+    List<LocalDate> findPaymentDatesByCustomerId(@Param("customerId") Long customerId);
+    
     @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.paymentDate BETWEEN :startDate AND :endDate")
     java.math.BigDecimal getTotalPaymentsByDateRange(@Param("startDate") LocalDate startDate,
                                                      @Param("endDate") LocalDate endDate);
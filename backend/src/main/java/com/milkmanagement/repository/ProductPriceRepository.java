@@ -8,6 +8,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -24,4 +26,17 @@ public interface ProductPriceRepository extends JpaRepository<ProductPrice, Long
            "AND pp.isActive = true " +
            "ORDER BY pp.effectiveFrom DESC")
     Optional<ProductPrice> findLatestActivePrice(@Param("product") Product product);
+    
+    // Latest active price first for each product
+    @Query("SELECT pp FROM ProductPrice pp WHERE pp.product.id IN :productIds " +
+           "AND pp.isActive = true " +
+           "ORDER BY pp.product.id, pp.effectiveFrom DESC, pp.id DESC")
+    List<ProductPrice> findActiveByProductIds(@Param("productIds") Collection<Long> productIds);
+    
+    @Query("SELECT pp FROM ProductPrice pp ORDER BY pp.product.id, pp.effectiveFrom, pp.id")
+    List<ProductPrice> findAllForTimeline();
+    
+    @Query("SELECT pp FROM ProductPrice pp WHERE pp.product.id IN :productIds " +
+           "ORDER BY pp.product.id, pp.effectiveFrom, pp.id")
+    List<ProductPrice> findForTimeline(@Param("productIds") Collection<Long> productIds);
 }
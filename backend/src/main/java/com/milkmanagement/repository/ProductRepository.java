@@ -1,10 +1,44 @@
 package com.milkmanagement.repository;
 
+import com.milkmanagement.dto.ProductDTO;
 import com.milkmanagement.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
     boolean existsByName(String name);
+    
+    List<Product> findByTypeIsNull();
+    
+    @Query("SELECT p.id FROM Product p ORDER BY p.id")
+    List<Long> findAllIds();
+    
+    @Query("SELECT p.id FROM Product p WHERE p.type = :type")
+    List<Long> findIdsByType(@Param("type") Product.ProductType type);
+    
+    // Product, stock and latest active price in one statement; a product without stock or price still comes back
+    String CATALOG_SELECT = "SELECT new com.milkmanagement.dto.ProductDTO(p.id, p.name, p.type, p.category, s.quantity, " +
+           "pp.pricePerUnit, p.unit, p.description, p.minOrderQuantity, p.imageUrl) " +
+           "FROM Product p " +
+           "LEFT JOIN Stock s ON s.product = p " +
+           "LEFT JOIN ProductPrice pp ON pp.product = p AND pp.isActive = true " +
+           "AND pp.effectiveFrom = (SELECT MAX(pp2.effectiveFrom) FROM ProductPrice pp2 " +
+           "WHERE pp2.product = p AND pp2.isActive = true) ";
+    
+    // Two active prices sharing an effective date yield two rows; the newest price id sorts first
+    @Query(CATALOG_SELECT + "ORDER BY p.id, pp.id DESC")
+    List<ProductDTO> findCatalog();
+    
+    @Query(CATALOG_SELECT + "WHERE p.id = :id ORDER BY pp.id DESC")
+    List<ProductDTO> findCatalogEntry(@Param("id") Long id);
+    
+    @Query(CATALOG_SELECT + "WHERE p.id IN :ids ORDER BY p.id, pp.id DESC")
+    List<ProductDTO> findCatalogEntries(@Param("ids") Collection<Long> ids);
 }
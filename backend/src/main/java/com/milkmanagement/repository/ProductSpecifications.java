@@ -0,0 +1,77 @@
+package com.milkmanagement.repository;
+
+import com.milkmanagement.entity.Product;
+import com.milkmanagement.entity.ProductPrice;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Filters for the product listing, combined by ProductService and evaluated in SQL.
+ * Each method returns null when its argument is absent, which Specification.where
+ * and and() treat as "no restriction".
+ */
+public final class ProductSpecifications {
+    
+    private ProductSpecifications() {
+    }
+    
+    public static Specification<Product> nameContains(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return null;
+        }
+        String pattern = "%" + name.trim().toLowerCase(Locale.ROOT) + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get("name")), pattern);
+    }
+    
+    public static Specification<Product> categoryEquals(String category) {
+        if (category == null || category.trim().isEmpty()) {
+            return null;
+        }
+        String value = category.trim().toLowerCase(Locale.ROOT);
+        return (root, query, cb) -> cb.equal(cb.lower(root.get("category")), value);
+    }
+    
+    // Known type codes use the indexed product_type column; anything else falls back to a name match
+    public static Specification<Product> hasType(String type) {
+        if (type == null || type.trim().isEmpty()) {
+            return null;
+        }
+        for (Product.ProductType productType : Product.ProductType.values()) {
+            if (productType.name().equalsIgnoreCase(type.trim())) {
+                return (root, query, cb) -> cb.equal(root.get("type"), productType);
+            }
+        }
+        String pattern = "%" + type.trim().toLowerCase(Locale.ROOT) + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get("name")), pattern);
+    }
+    
+    // EXISTS over the latest active price, matching the price the catalog shows
+    public static Specification<Product> activePriceBetween(BigDecimal minPrice, BigDecimal maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return null;
+        }
+        return (root, query, cb) -> {
+            Subquery<LocalDate> latest = query.subquery(LocalDate.class);
+            Root<ProductPrice> latestPrice = latest.from(ProductPrice.class);
+            latest.select(cb.greatest(latestPrice.<LocalDate>get("effectiveFrom")))
+                    .where(cb.equal(latestPrice.get("product"), root),
+                            cb.isTrue(latestPrice.get("isActive")));
+            
+            Subquery<Long> matching = query.subquery(Long.class);
+            Root<ProductPrice> price = matching.from(ProductPrice.class);
+            matching.select(price.get("id"))
+                    .where(cb.and(
+                            cb.equal(price.get("product"), root),
+                            cb.isTrue(price.get("isActive")),
+                            cb.equal(price.get("effectiveFrom"), latest),
+                            minPrice != null ? cb.greaterThanOrEqualTo(price.get("pricePerUnit"), minPrice) : cb.conjunction(),
+                            maxPrice != null ? cb.lessThanOrEqualTo(price.get("pricePerUnit"), maxPrice) : cb.conjunction()));
+            return cb.exists(matching);
+        };
+    }
+}
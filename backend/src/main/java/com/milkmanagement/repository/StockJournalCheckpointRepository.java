@@ -0,0 +1,9 @@
+package com.milkmanagement.repository;
+
+import com.milkmanagement.entity.StockJournalCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockJournalCheckpointRepository extends JpaRepository<StockJournalCheckpoint, Long> {
+}
@@ -0,0 +1,29 @@
+package com.milkmanagement.repository;
+
+import com.milkmanagement.entity.StockMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Repository
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+    
+    // Seeks (product_id, id) to the movements after a snapshot, so it reads at most one snapshot interval
+    @Query("SELECT COALESCE(SUM(m.quantityDelta), 0) FROM StockMovement m " +
+           "WHERE m.productId = :productId AND m.id > :afterId AND m.occurredAt <= :at")
+    BigDecimal sumDeltaAfter(@Param("productId") Long productId,
+                             @Param("afterId") Long afterId,
+                             @Param("at") LocalDateTime at);
+    
+    // Only for products created after movement tracking began, which start from zero
+    @Query("SELECT COALESCE(SUM(m.quantityDelta), 0) FROM StockMovement m " +
+           "WHERE m.productId = :productId AND m.occurredAt <= :at")
+    BigDecimal sumDeltaUntil(@Param("productId") Long productId, @Param("at") LocalDateTime at);
+    
+    @Query("SELECT COALESCE(MAX(m.id), 0) FROM StockMovement m WHERE m.productId = :productId")
+    Long findLastIdByProductId(@Param("productId") Long productId);
+}
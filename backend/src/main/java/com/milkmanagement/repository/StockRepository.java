@@ -1,12 +1,58 @@
 package com.milkmanagement.repository;
 
+import com.milkmanagement.dto.ProductTypeQuantityDTO;
 import com.milkmanagement.entity.Stock;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface StockRepository extends JpaRepository<Stock, Long> {
     Optional<Stock> findByProductId(Long productId);
+    
+    @Query("SELECT s FROM Stock s WHERE s.product.id IN :productIds")
+    List<Stock> findByProductIdIn(@Param("productIds") Collection<Long> productIds);
+    
+    // Waits for writers of the row to commit; stock movements are recorded while the row is locked
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Stock s WHERE s.product.id = :productId")
+    Optional<Stock> findByProductIdForUpdate(@Param("productId") Long productId);
+    
+    // Locks in product id order, the same order orders decrement in
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Stock s WHERE s.product.id IN :productIds ORDER BY s.product.id")
+    List<Stock> findByProductIdsForUpdate(@Param("productIds") Collection<Long> productIds);
+    
+    @Query("SELECT new com.milkmanagement.dto.ProductTypeQuantityDTO(p.type, SUM(s.quantity)) " +
+           "FROM Stock s JOIN s.product p " +
+           "WHERE p.type IS NOT NULL " +
+           "GROUP BY p.type")
+    List<ProductTypeQuantityDTO> sumQuantityByProductType();
+    
+    // Relative adjustments run as one UPDATE so concurrent writers never lose each other's changes;
+    // callers check the returned row count
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Stock s SET s.quantity = s.quantity + :delta, s.lastUpdated = :now, s.version = s.version + 1 " +
+           "WHERE s.product.id = :productId")
+    int adjustQuantity(@Param("productId") Long productId,
+                       @Param("delta") BigDecimal delta,
+                       @Param("now") LocalDateTime now);
+    
+    // Returns 0 when the product has less than the requested quantity in stock
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Stock s SET s.quantity = s.quantity - :quantity, s.lastUpdated = :now, s.version = s.version + 1 " +
+           "WHERE s.product.id = :productId AND s.quantity >= :quantity")
+    int decrementIfAvailable(@Param("productId") Long productId,
+                             @Param("quantity") BigDecimal quantity,
+                             @Param("now") LocalDateTime now);
 }
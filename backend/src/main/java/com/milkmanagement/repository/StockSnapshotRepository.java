@@ -0,0 +1,19 @@
+package com.milkmanagement.repository;
+
+import com.milkmanagement.entity.StockSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long> {
+    
+    Optional<StockSnapshot> findFirstByProductIdAndTakenAtLessThanEqualOrderByTakenAtDescIdDesc(
+            Long productId, LocalDateTime at);
+    
+    Optional<StockSnapshot> findFirstByProductIdOrderByTakenAtAscIdAsc(Long productId);
+    
+    boolean existsByProductId(Long productId);
+}
@@ -1,5 +1,6 @@
 package com.milkmanagement.security;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -60,6 +61,7 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll() // Re-dispatches of already authorized requests (e.g. SSE streams)
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/customers/**").hasAnyRole("ADMIN", "MANAGER")
                 .requestMatchers("/api/deliveries/**").hasAnyRole("ADMIN", "MANAGER")
@@ -74,6 +76,7 @@ public class SecurityConfig {
                 .requestMatchers("/api/products/**").hasAnyRole("ADMIN", "MANAGER") // Other endpoints (POST/PUT/DELETE) need admin/manager
                 .requestMatchers("/api/dashboard/**").hasAnyRole("ADMIN", "MANAGER")
                 .requestMatchers("/api/users/**").hasRole("ADMIN")
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             );
         
@@ -97,6 +100,7 @@ public class SecurityConfig {
         
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList("ETag", "X-Total-Count", "X-Next-Cursor", "Location", "Retry-After", "Idempotent-Replayed"));
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
@@ -1,5 +1,6 @@
 package com.milkmanagement.service;
 
+import com.milkmanagement.cache.ResourceVersions;
 import com.milkmanagement.dto.CustomerDTO;
 import com.milkmanagement.dto.CustomerSignupDTO;
 import com.milkmanagement.dto.JwtResponse;
@@ -7,11 +8,13 @@ import com.milkmanagement.dto.LoginRequest;
 import com.milkmanagement.entity.Customer;
 import com.milkmanagement.entity.Role;
 import com.milkmanagement.entity.User;
+import com.milkmanagement.event.DashboardDataChangedEvent;
 import com.milkmanagement.repository.CustomerRepository;
 import com.milkmanagement.repository.RoleRepository;
 import com.milkmanagement.repository.UserRepository;
 import com.milkmanagement.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -47,6 +50,12 @@ public class AuthService {
     @Autowired
     private CustomerRepository customerRepository;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private ResourceVersions resourceVersions;
+    
     @Transactional
     public JwtResponse authenticateUser(LoginRequest loginRequest) {
         Authentication authentication = authenticationManager.authenticate(
@@ -156,6 +165,8 @@ public class AuthService {
         customer.setCreatedBy(savedUser);
         
         Customer savedCustomer = customerRepository.save(customer);
+        eventPublisher.publishEvent(DashboardDataChangedEvent.customer(1, 1));
+        resourceVersions.bump(ResourceVersions.Resource.CUSTOMERS);
         
         // Convert to DTO
         CustomerDTO customerDTO = new CustomerDTO();
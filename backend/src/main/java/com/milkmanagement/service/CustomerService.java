@@ -1,17 +1,27 @@
 package com.milkmanagement.service;
 
+import com.milkmanagement.cache.ResourceVersions;
 import com.milkmanagement.dto.CustomerDTO;
+import com.milkmanagement.dto.DeliveryTotalsDTO;
 import com.milkmanagement.entity.Customer;
 import com.milkmanagement.entity.User;
+import com.milkmanagement.event.DashboardDataChangedEvent;
 import com.milkmanagement.repository.CustomerRepository;
+import com.milkmanagement.repository.MilkDeliveryRepository;
+import com.milkmanagement.repository.PaymentRepository;
 import com.milkmanagement.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,6 +33,21 @@ public class CustomerService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private MilkDeliveryRepository milkDeliveryRepository;
+    
+    @Autowired
+    private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private DailySalesSummaryService dailySalesSummaryService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private ResourceVersions resourceVersions;
+    
     @Transactional(readOnly = true)
     public List<CustomerDTO> getAllCustomers() {
         return customerRepository.findAll().stream()
@@ -60,6 +85,8 @@ public class CustomerService {
         }
         
         Customer savedCustomer = customerRepository.save(customer);
+        eventPublisher.publishEvent(DashboardDataChangedEvent.customer(1, activeCount(savedCustomer)));
+        resourceVersions.bump(ResourceVersions.Resource.CUSTOMERS);
         return convertToDTO(savedCustomer);
     }
     
@@ -68,6 +95,8 @@ public class CustomerService {
         Customer customer = customerRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Customer not found with id: " + id));
         
+        int wasActive = activeCount(customer);
+        
         if (customerDTO.getName() != null) customer.setName(customerDTO.getName());
         if (customerDTO.getAddress() != null) customer.setAddress(customerDTO.getAddress());
         if (customerDTO.getMobileNumber() != null) customer.setMobileNumber(customerDTO.getMobileNumber());
@@ -77,15 +106,46 @@ public class CustomerService {
         if (customerDTO.getDeliveryStatus() != null) customer.setDeliveryStatus(customerDTO.getDeliveryStatus());
         
         Customer updatedCustomer = customerRepository.save(customer);
+        eventPublisher.publishEvent(DashboardDataChangedEvent.customer(0, activeCount(updatedCustomer) - wasActive));
+        resourceVersions.bump(ResourceVersions.Resource.CUSTOMERS);
         return convertToDTO(updatedCustomer);
     }
     
     @Transactional
     public void deleteCustomer(Long id) {
-        if (!customerRepository.existsById(id)) {
-            throw new RuntimeException("Customer not found with id: " + id);
+        Customer customer = customerRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Customer not found with id: " + id));
+        
+        // The database cascades the delete to the customer's deliveries and payments, so their
+        // totals are read first and taken out of the rollup and the dashboard afterwards
+        List<LocalDate> deliveryDates = milkDeliveryRepository.findDeliveryDatesByCustomerId(id);
+        List<LocalDate> paymentDates = paymentRepository.findPaymentDatesByCustomerId(id);
+        DeliveryTotalsDTO deliveries = milkDeliveryRepository.getDeliveryTotalsByCustomerId(id);
+        BigDecimal payments = paymentRepository.getTotalPaymentsByCustomer(customer);
+        
+        customerRepository.delete(customer);
+        customerRepository.flush();
+        
+        Set<LocalDate> dates = new TreeSet<>(deliveryDates);
+        dates.addAll(paymentDates);
+        dailySalesSummaryService.rebuildDates(dates);
+        
+        eventPublisher.publishEvent(DashboardDataChangedEvent.customer(-1, -activeCount(customer)));
+        if (!deliveryDates.isEmpty()) {
+            eventPublisher.publishEvent(DashboardDataChangedEvent.deliveries(Set.copyOf(deliveryDates),
+                    deliveries.getTotalAmount().negate(), deliveries.getTotalQuantity().negate(),
+                    -deliveries.getDeliveryCount()));
+            resourceVersions.bump(ResourceVersions.Resource.DELIVERIES);
+        }
+        if (!paymentDates.isEmpty()) {
+            eventPublisher.publishEvent(DashboardDataChangedEvent.payment(payments.negate(),
+                    paymentDates.toArray(new LocalDate[0])));
         }
-        customerRepository.deleteById(id);
+        resourceVersions.bump(ResourceVersions.Resource.CUSTOMERS);
+    }
+    
+    private int activeCount(Customer customer) {
+        return customer.getDeliveryStatus() == Customer.DeliveryStatus.ACTIVE ? 1 : 0;
     }
     
     private CustomerDTO convertToDTO(Customer customer) {
@@ -0,0 +1,142 @@
+package com.milkmanagement.service;
+
+import com.milkmanagement.dto.DeliveryTotalsDTO;
+import com.milkmanagement.entity.DailySalesSummary;
+import com.milkmanagement.entity.MilkDelivery;
+import com.milkmanagement.event.DashboardDataChangedEvent;
+import com.milkmanagement.repository.DailySalesSummaryRepository;
+import com.milkmanagement.repository.MilkDeliveryRepository;
+import com.milkmanagement.repository.PaymentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Maintains the daily_sales_summary rollup. Writers call the record methods
+ * inside their own transaction so the rollup commits or rolls back with the
+ * delivery/payment row; rebuild() regenerates everything from the raw tables.
+ */
+@Service
+public class DailySalesSummaryService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DailySalesSummaryService.class);
+    
+    @Autowired
+    private DailySalesSummaryRepository dailySalesSummaryRepository;
+    
+    @Autowired
+    private MilkDeliveryRepository milkDeliveryRepository;
+    
+    @Autowired
+    private PaymentRepository paymentRepository;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Value("${sales-summary.per-customer-rows:false}")
+    private boolean perCustomerRows;
+    
+    @Transactional
+    public void recordDelivery(MilkDelivery delivery) {
+        applyDelivery(delivery.getDeliveryDate(), delivery.getProduct().getId(), delivery.getCustomer().getId(),
+                delivery.getQuantityDelivered(), delivery.getTotalAmount(), 1);
+    }
+    
+    @Transactional
+    public void recordPayment(LocalDate paymentDate, Long customerId, BigDecimal amount) {
+        applyPayment(paymentDate, customerId, amount);
+    }
+    
+    @Transactional
+    public void reversePayment(LocalDate paymentDate, Long customerId, BigDecimal amount) {
+        applyPayment(paymentDate, customerId, amount.negate());
+    }
+    
+    // Regenerates one date's delivery rows from milk_deliveries, for bulk writes that bypass recordDelivery
+    @Transactional
+    public void rebuildDeliveries(LocalDate date) {
+        dailySalesSummaryRepository.deleteDeliveryRowsForDate(date);
+        dailySalesSummaryRepository.insertDeliveryTotalsForDate(date);
+        if (perCustomerRows) {
+            dailySalesSummaryRepository.insertCustomerDeliveryTotalsForDate(date);
+        }
+    }
+    
+    // Regenerates every row of the given dates, e.g. after a delete the database cascaded to deliveries and payments
+    @Transactional
+    public void rebuildDates(Collection<LocalDate> dates) {
+        for (LocalDate date : dates) {
+            dailySalesSummaryRepository.deleteRowsForDate(date);
+            dailySalesSummaryRepository.insertDeliveryTotalsForDate(date);
+            dailySalesSummaryRepository.insertPaymentTotalsForDate(date);
+            if (perCustomerRows) {
+                dailySalesSummaryRepository.insertCustomerDeliveryTotalsForDate(date);
+                dailySalesSummaryRepository.insertCustomerPaymentTotalsForDate(date);
+            }
+        }
+    }
+    
+    @Transactional(readOnly = true)
+    public DeliveryTotalsDTO getDeliveryTotals(LocalDate fromDate, LocalDate toDate) {
+        return dailySalesSummaryRepository.getDeliveryTotals(fromDate, toDate);
+    }
+    
+    @Transactional(readOnly = true)
+    public BigDecimal getPaymentTotal(LocalDate fromDate, LocalDate toDate) {
+        return dailySalesSummaryRepository.getPaymentTotal(fromDate, toDate);
+    }
+    
+    @Transactional
+    @Scheduled(cron = "${sales-summary.rebuild-cron:0 30 2 * * *}")
+    public void rebuild() {
+        dailySalesSummaryRepository.deleteAllRows();
+        dailySalesSummaryRepository.insertDeliveryTotalsFromDeliveries();
+        dailySalesSummaryRepository.insertPaymentTotalsFromPayments();
+        if (perCustomerRows) {
+            dailySalesSummaryRepository.insertCustomerDeliveryTotalsFromDeliveries();
+            dailySalesSummaryRepository.insertCustomerPaymentTotalsFromPayments();
+        }
+        eventPublisher.publishEvent(DashboardDataChangedEvent.summaryRebuilt());
+        logger.info("Rebuilt daily sales summary ({} rows)", dailySalesSummaryRepository.count());
+    }
+    
+    // First start after an upgrade: the table exists but was never populated
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeIfEmpty() {
+        if (dailySalesSummaryRepository.count() == 0
+                && (milkDeliveryRepository.count() > 0 || paymentRepository.count() > 0)) {
+            rebuild();
+        }
+    }
+    
+    private void applyDelivery(LocalDate date, Long productId, Long customerId,
+                               BigDecimal quantity, BigDecimal amount, long count) {
+        dailySalesSummaryRepository.applyDelta(date, productId, DailySalesSummary.ALL,
+                quantity, amount, BigDecimal.ZERO, count);
+        if (perCustomerRows) {
+            dailySalesSummaryRepository.applyDelta(date, productId, customerId,
+                    quantity, amount, BigDecimal.ZERO, count);
+        }
+    }
+    
+    private void applyPayment(LocalDate date, Long customerId, BigDecimal amount) {
+        dailySalesSummaryRepository.applyDelta(date, DailySalesSummary.ALL, DailySalesSummary.ALL,
+                BigDecimal.ZERO, BigDecimal.ZERO, amount, 0);
+        if (perCustomerRows) {
+            dailySalesSummaryRepository.applyDelta(date, DailySalesSummary.ALL, customerId,
+                    BigDecimal.ZERO, BigDecimal.ZERO, amount, 0);
+        }
+    }
+}
@@ -1,18 +1,32 @@
 package com.milkmanagement.service;
 
+import com.milkmanagement.cache.DashboardStatsCache;
 import com.milkmanagement.dto.DashboardStatsDTO;
+import com.milkmanagement.dto.DeliveryTotalsDTO;
 import com.milkmanagement.entity.Customer;
-import com.milkmanagement.entity.MilkDelivery;
-import com.milkmanagement.entity.Payment;
 import com.milkmanagement.repository.CustomerRepository;
-import com.milkmanagement.repository.MilkDeliveryRepository;
-import com.milkmanagement.repository.PaymentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @Service
 public class DashboardService {
@@ -21,64 +35,97 @@ public class DashboardService {
     private CustomerRepository customerRepository;
     
     @Autowired
-    private MilkDeliveryRepository milkDeliveryRepository;
+    private DailySalesSummaryService dailySalesSummaryService;
     
     @Autowired
-    private PaymentRepository paymentRepository;
+    private DashboardStatsCache dashboardStatsCache;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${dashboard.query-executor.pool-size:4}")
+    private int queryPoolSize;
+    
+    @Value("${dashboard.query-executor.queue-capacity:100}")
+    private int queryQueueCapacity;
+    
+    @Value("${dashboard.query-timeout-ms:10000}")
+    private long queryTimeoutMs;
+    
+    private ThreadPoolExecutor queryExecutor;
+    private TransactionTemplate readOnlyTransaction;
+    private final Map<String, Timer> subQueryTimers = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        
+        // Bounded so a burst of dashboard requests cannot exhaust the connection pool;
+        // when the queue is full the request thread runs the sub-query itself
+        AtomicInteger threadNumber = new AtomicInteger();
+        queryExecutor = new ThreadPoolExecutor(queryPoolSize, queryPoolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queryQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dashboard-query-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        queryExecutor.shutdown();
+    }
     
-    @Transactional(readOnly = true)
     public DashboardStatsDTO getDashboardStats() {
         return getDashboardStats(null, null);
     }
     
-    @Transactional(readOnly = true)
-    public DashboardStatsDTO getDashboardStats(java.time.LocalDate fromDate, java.time.LocalDate toDate) {
-        DashboardStatsDTO stats = new DashboardStatsDTO();
-        
-        long totalCustomers = customerRepository.count();
-        long activeCustomers = customerRepository.findByDeliveryStatus(Customer.DeliveryStatus.ACTIVE).size();
+    // Not @Transactional: a cache hit should not open a transaction, misses run each sub-query in its own read-only one
+    public DashboardStatsDTO getDashboardStats(LocalDate fromDate, LocalDate toDate) {
+        return dashboardStatsCache.get(fromDate, toDate, () -> computeDashboardStats(fromDate, toDate));
+    }
+    
+    private DashboardStatsDTO computeDashboardStats(LocalDate fromDate, LocalDate toDate) {
+        // The four reads are independent, so latency is that of the slowest one
+        CompletableFuture<Long> totalCustomersFuture = subQuery("total_customers",
+                () -> customerRepository.count());
+        CompletableFuture<Long> activeCustomersFuture = subQuery("active_customers",
+                () -> customerRepository.countByDeliveryStatus(Customer.DeliveryStatus.ACTIVE));
+        CompletableFuture<DeliveryTotalsDTO> deliveryTotalsFuture = subQuery("delivery_totals",
+                () -> dailySalesSummaryService.getDeliveryTotals(fromDate, toDate));
+        CompletableFuture<BigDecimal> paymentTotalFuture = subQuery("payment_totals",
+                () -> dailySalesSummaryService.getPaymentTotal(fromDate, toDate));
         
-        List<MilkDelivery> allDeliveries = milkDeliveryRepository.findAll();
-        if (fromDate != null || toDate != null) {
-            allDeliveries = allDeliveries.stream()
-                    .filter(delivery -> {
-                        java.time.LocalDate date = delivery.getDeliveryDate();
-                        if (date == null) {
-                            return false;
-                        }
-                        boolean afterFrom = fromDate == null || !date.isBefore(fromDate);
-                        boolean beforeTo = toDate == null || !date.isAfter(toDate);
-                        return afterFrom && beforeTo;
-                    })
-                    .toList();
+        try {
+            CompletableFuture.allOf(totalCustomersFuture, activeCustomersFuture, deliveryTotalsFuture, paymentTotalFuture)
+                    .get(queryTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading dashboard statistics", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error loading dashboard statistics", e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out loading dashboard statistics", e);
         }
         
-        BigDecimal totalRevenue = allDeliveries.stream()
-                .map(MilkDelivery::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        DashboardStatsDTO stats = new DashboardStatsDTO();
         
-        BigDecimal totalDeliveries = allDeliveries.stream()
-                .map(MilkDelivery::getQuantityDelivered)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long totalCustomers = totalCustomersFuture.join();
+        long activeCustomers = activeCustomersFuture.join();
         
-        List<Payment> allPayments = paymentRepository.findAll();
-        if (fromDate != null || toDate != null) {
-            allPayments = allPayments.stream()
-                    .filter(payment -> {
-                        java.time.LocalDate date = payment.getPaymentDate();
-                        if (date == null) {
-                            return false;
-                        }
-                        boolean afterFrom = fromDate == null || !date.isBefore(fromDate);
-                        boolean beforeTo = toDate == null || !date.isAfter(toDate);
-                        return afterFrom && beforeTo;
-                    })
-                    .toList();
-        }
+        // Totals come from the daily rollup; SUM over an empty range comes back as null
+        DeliveryTotalsDTO deliveryTotals = deliveryTotalsFuture.join();
+        BigDecimal totalRevenue = orZero(deliveryTotals.getTotalAmount());
+        BigDecimal totalDeliveries = orZero(deliveryTotals.getTotalQuantity());
+        long deliveriesCount = deliveryTotals.getDeliveryCount() != null ? deliveryTotals.getDeliveryCount() : 0L;
         
-        BigDecimal totalPayments = allPayments.stream()
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalPayments = orZero(paymentTotalFuture.join());
         
         BigDecimal pendingAmount = totalRevenue.subtract(totalPayments);
         
@@ -88,8 +135,22 @@ public class DashboardService {
         stats.setTotalDeliveries(totalDeliveries);
         stats.setTotalPayments(totalPayments);
         stats.setPendingAmount(pendingAmount);
-        stats.setTotalDeliveriesCount((long) allDeliveries.size());
+        stats.setTotalDeliveriesCount(deliveriesCount);
         
         return stats;
     }
+    
+    private <T> CompletableFuture<T> subQuery(String name, Supplier<T> query) {
+        Timer timer = subQueryTimers.computeIfAbsent(name, key -> Timer.builder("dashboard.stats.subquery")
+                .description("Latency of each dashboard statistics sub-query")
+                .tag("query", key)
+                .register(meterRegistry));
+        return CompletableFuture.supplyAsync(
+                () -> timer.record(() -> readOnlyTransaction.execute(status -> query.get())),
+                queryExecutor);
+    }
+    
+    private BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
 }
@@ -0,0 +1,125 @@
+package com.milkmanagement.service;
+
+import com.milkmanagement.dto.DashboardStatsDTO;
+import com.milkmanagement.event.DashboardDataChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pushes all-time dashboard statistics to connected admin clients over SSE.
+ *
+ * New subscribers get a "snapshot" event straight away (served from the shared
+ * DashboardStatsCache). Committed writes are folded into one pending delta which
+ * is broadcast as a single "delta" event every dashboard.stream.coalesce-ms, so a
+ * burst of writes costs one push and no queries. A fresh snapshot is broadcast
+ * every dashboard.stream.resync-ms to correct any drift.
+ */
+@Service
+public class DashboardStreamService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DashboardStreamService.class);
+    
+    @Autowired
+    private DashboardService dashboardService;
+    
+    @Value("${dashboard.stream.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+    
+    @Value("${dashboard.stream.resync-ms:60000}")
+    private long resyncMs;
+    
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    
+    private final Object pendingLock = new Object();
+    private DashboardStatsDTO pendingDelta;
+    private boolean resyncRequested;
+    private long lastSnapshotAt = System.currentTimeMillis();
+    
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        
+        try {
+            emitter.send(SseEmitter.event().name("snapshot").data(dashboardService.getDashboardStats()));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        emitters.add(emitter);
+        return emitter;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDashboardDataChanged(DashboardDataChangedEvent event) {
+        synchronized (pendingLock) {
+            if (event.getSource() == DashboardDataChangedEvent.Source.SUMMARY_REBUILD) {
+                resyncRequested = true;
+                return;
+            }
+            if (pendingDelta == null) {
+                pendingDelta = new DashboardStatsDTO(0L, 0L, BigDecimal.ZERO, BigDecimal.ZERO,
+                        BigDecimal.ZERO, BigDecimal.ZERO, 0L);
+            }
+            pendingDelta.setTotalCustomers(pendingDelta.getTotalCustomers() + event.getCustomerDelta());
+            pendingDelta.setActiveCustomers(pendingDelta.getActiveCustomers() + event.getActiveCustomerDelta());
+            pendingDelta.setTotalRevenue(pendingDelta.getTotalRevenue().add(event.getRevenueDelta()));
+            pendingDelta.setTotalDeliveries(pendingDelta.getTotalDeliveries().add(event.getQuantityDelta()));
+            pendingDelta.setTotalPayments(pendingDelta.getTotalPayments().add(event.getPaymentDelta()));
+            pendingDelta.setPendingAmount(pendingDelta.getTotalRevenue().subtract(pendingDelta.getTotalPayments()));
+            pendingDelta.setTotalDeliveriesCount(pendingDelta.getTotalDeliveriesCount() + event.getDeliveryCountDelta());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${dashboard.stream.coalesce-ms:1000}")
+    public void flush() {
+        DashboardStatsDTO delta;
+        boolean resync;
+        synchronized (pendingLock) {
+            delta = pendingDelta;
+            pendingDelta = null;
+            resync = resyncRequested || System.currentTimeMillis() - lastSnapshotAt >= resyncMs;
+            resyncRequested = false;
+        }
+        if (emitters.isEmpty()) {
+            return;
+        }
+        
+        if (resync) {
+            // One aggregation shared by every subscriber; it already includes the pending delta
+            broadcast("snapshot", dashboardService.getDashboardStats());
+            lastSnapshotAt = System.currentTimeMillis();
+        } else if (delta != null) {
+            broadcast("delta", delta);
+        }
+    }
+    
+    public int getSubscriberCount() {
+        return emitters.size();
+    }
+    
+    private void broadcast(String eventName, DashboardStatsDTO payload) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name(eventName).data(payload));
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Dropping dashboard stream subscriber: {}", e.getMessage());
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.milkmanagement.service;
+
+import com.milkmanagement.entity.Product;
+import com.milkmanagement.entity.Stock;
+import com.milkmanagement.entity.StockMovement;
+import com.milkmanagement.repository.StockRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Movements are recorded after the UPDATE, while the stock row lock is held
+@Service
+@ConditionalOnProperty(name = "stock.engine", havingValue = "database", matchIfMissing = true)
+public class DatabaseStockLedger implements StockLedger {
+    
+    @Autowired
+    private StockRepository stockRepository;
+    
+    @Autowired
+    private StockHistoryService stockHistoryService;
+    
+    @Override
+    public boolean decrementsVisibleBeforeCommit() {
+        return false;
+    }
+    
+    @Override
+    public BigDecimal available(Long productId) {
+        return stockRepository.findByProductId(productId)
+                .map(Stock::getQuantity)
+                .orElse(BigDecimal.ZERO);
+    }
+    
+    @Override
+    public Map<Long, BigDecimal> available(Collection<Long> productIds) {
+        Map<Long, BigDecimal> quantities = new HashMap<>();
+        productIds.forEach(productId -> quantities.put(productId, BigDecimal.ZERO));
+        if (!productIds.isEmpty()) {
+            for (Stock stock : stockRepository.findByProductIdIn(productIds)) {
+                quantities.put(stock.getProduct().getId(), stock.getQuantity());
+            }
+        }
+        return quantities;
+    }
+    
+    @Override
+    public void add(Product product, BigDecimal delta, StockMovement.Reason reason, Long referenceId) {
+        if (stockRepository.adjustQuantity(product.getId(), delta, LocalDateTime.now()) == 0) {
+            // First change for a product without a stock row; the unique product_id rejects a racing insert
+            createStock(product, delta);
+        }
+        stockHistoryService.record(product.getId(), delta, reason, referenceId);
+    }
+    
+    @Override
+    public void addAll(Product product, Map<Long, BigDecimal> deltasByReference, StockMovement.Reason reason) {
+        BigDecimal total = deltasByReference.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (stockRepository.adjustQuantity(product.getId(), total, LocalDateTime.now()) == 0) {
+            createStock(product, total);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<StockMovement> movements = new ArrayList<>(deltasByReference.size());
+        deltasByReference.forEach((referenceId, delta) ->
+                movements.add(new StockMovement(product.getId(), delta, reason, referenceId, now)));
+        stockHistoryService.recordAll(movements);
+    }
+    
+    @Override
+    public boolean tryDecrement(Long productId, BigDecimal quantity, StockMovement.Reason reason, Long referenceId) {
+        if (stockRepository.decrementIfAvailable(productId, quantity, LocalDateTime.now()) == 0) {
+            return false;
+        }
+        stockHistoryService.record(productId, quantity.negate(), reason, referenceId);
+        return true;
+    }
+    
+    // The applied delta depends on the current quantity, so the row is read under lock
+    @Override
+    public void decrementClampedAtZero(Long productId, BigDecimal quantity, StockMovement.Reason reason,
+                                       Long referenceId) {
+        stockRepository.findByProductIdForUpdate(productId).ifPresent(stock -> {
+            BigDecimal applied = stock.getQuantity().min(quantity).max(BigDecimal.ZERO);
+            stock.setQuantity(stock.getQuantity().subtract(applied));
+            stockHistoryService.record(productId, applied.negate(), reason, referenceId);
+        });
+    }
+    
+    @Override
+    public void setQuantity(Product product, BigDecimal quantity) {
+        Stock stock = stockRepository.findByProductIdForUpdate(product.getId()).orElse(null);
+        if (stock == null) {
+            createStock(product, quantity);
+            stockHistoryService.record(product.getId(), quantity, StockMovement.Reason.ADJUSTMENT, null);
+            return;
+        }
+        overwrite(stock, quantity);
+    }
+    
+    @Override
+    public void setQuantities(Collection<Long> productIds, BigDecimal quantity) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        for (Stock stock : stockRepository.findByProductIdsForUpdate(productIds)) {
+            overwrite(stock, quantity);
+        }
+    }
+    
+    private void overwrite(Stock stock, BigDecimal quantity) {
+        BigDecimal delta = quantity.subtract(stock.getQuantity());
+        stock.setQuantity(quantity);
+        stockHistoryService.record(stock.getProduct().getId(), delta, StockMovement.Reason.ADJUSTMENT, null);
+    }
+    
+    private void createStock(Product product, BigDecimal quantity) {
+        Stock stock = new Stock();
+        stock.setProduct(product);
+        stock.setQuantity(quantity);
+        stockRepository.save(stock);
+    }
+}
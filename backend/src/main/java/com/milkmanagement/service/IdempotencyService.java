@@ -0,0 +1,336 @@
+package com.milkmanagement.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.milkmanagement.entity.IdempotencyRecord;
+import com.milkmanagement.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key support for write endpoints. The first request with a key
+ * runs in a transaction that claims the key in idempotency_keys, performs the
+ * write and stores the response, so the write and its stored response commit
+ * together. A retry with the same key gets the stored response back without
+ * running the write again; a retry that arrives while the first request is
+ * still running waits for it. Only successful (2xx) responses are kept: a
+ * failed request rolls back its claim and may be retried with the same key.
+ *
+ * Actions that must not run inside the claim transaction, such as handing an
+ * order to the asynchronous intake, use executeOutsideTransaction(): the claim
+ * commits first and the response is stored once the action has returned. If
+ * the process dies in between, retries get 409 until the key expires.
+ *
+ * Recent outcomes are kept in memory for idempotency.memory-window-ms so most
+ * retries never touch the database; older ones, and keys first used on another
+ * instance or before a restart, are found by the claim failing on the existing
+ * row. Keys expire after idempotency.ttl-ms and are then free for reuse.
+ */
+@Service
+public class IdempotencyService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final int DELETE_CHUNK_SIZE = 5000;
+    
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${idempotency.ttl-ms:86400000}")
+    private long ttlMs;
+    
+    @Value("${idempotency.memory-window-ms:600000}")
+    private long memoryWindowMs;
+    
+    @Value("${idempotency.wait-timeout-ms:30000}")
+    private long waitTimeoutMs;
+    
+    private final TransactionTemplate transactionTemplate;
+    
+    // One future per key in use; completed with the stored response, or with null when nothing was stored
+    private final Map<String, CompletableFuture<StoredResponse>> responses = new ConcurrentHashMap<>();
+    
+    private Counter replays;
+    
+    public IdempotencyService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @PostConstruct
+    public void registerMetrics() {
+        replays = Counter.builder("idempotency.replays").register(meterRegistry);
+    }
+    
+    /**
+     * Runs the action once per key, scope and user, replaying its response for
+     * repeated requests. Without a key the action simply runs.
+     */
+    public ResponseEntity<?> execute(String scope, String key, Object request, Supplier<ResponseEntity<?>> action) {
+        return execute(scope, key, request, true, action);
+    }
+    
+    // As execute(), but the action runs after the claim has committed rather than inside its transaction
+    public ResponseEntity<?> executeOutsideTransaction(String scope, String key, Object request,
+                                                       Supplier<ResponseEntity<?>> action) {
+        return execute(scope, key, request, false, action);
+    }
+    
+    private ResponseEntity<?> execute(String scope, String key, Object request, boolean inClaimTransaction,
+                                      Supplier<ResponseEntity<?>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body("Error: " + HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        
+        String recordKey = scope + ":" + currentUsername() + ":" + key;
+        String requestHash = hash(request);
+        long deadline = System.currentTimeMillis() + waitTimeoutMs;
+        while (true) {
+            CompletableFuture<StoredResponse> claimed = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> existing = responses.putIfAbsent(recordKey, claimed);
+            if (existing == null) {
+                return inClaimTransaction
+                        ? executeClaimed(recordKey, requestHash, action, claimed)
+                        : executeAfterClaim(recordKey, requestHash, action, claimed);
+            }
+            
+            StoredResponse stored;
+            try {
+                stored = existing.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return inProgress();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return inProgress();
+            } catch (ExecutionException e) {
+                stored = null;
+            }
+            if (stored != null && stored.expiresAt().isAfter(LocalDateTime.now())) {
+                return replay(stored, requestHash);
+            }
+            // The earlier request failed, or its key expired: run this one instead
+            responses.remove(recordKey, existing);
+        }
+    }
+    
+    // Drops in-memory outcomes past the memory window and deletes expired keys from the table
+    @Scheduled(fixedDelayString = "${idempotency.sweep-interval-ms:600000}")
+    public void expire() {
+        LocalDateTime memoryCutoff = LocalDateTime.now().minus(Duration.ofMillis(memoryWindowMs));
+        responses.entrySet().removeIf(entry -> {
+            StoredResponse stored = entry.getValue().getNow(null);
+            return stored != null && stored.storedAt().isBefore(memoryCutoff);
+        });
+        
+        LocalDateTime now = LocalDateTime.now();
+        int deleted = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> idempotencyRecordRepository.deleteExpired(now, DELETE_CHUNK_SIZE));
+            deleted += chunk;
+        } while (chunk == DELETE_CHUNK_SIZE);
+        if (deleted > 0) {
+            logger.info("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+    
+    private ResponseEntity<?> executeClaimed(String recordKey, String requestHash, Supplier<ResponseEntity<?>> action,
+                                             CompletableFuture<StoredResponse> claimed) {
+        StoredResponse stored = null;
+        try {
+            Outcome outcome = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                LocalDateTime expiresAt = now.plus(Duration.ofMillis(ttlMs));
+                idempotencyRecordRepository.deleteIfExpired(recordKey, now);
+                idempotencyRecordRepository.claim(recordKey, requestHash, now, expiresAt);
+                
+                ResponseEntity<?> response = action.get();
+                if (!response.getStatusCode().is2xxSuccessful()) {
+                    // Releases the claim along with whatever the failed request wrote
+                    status.setRollbackOnly();
+                    return new Outcome(response, null);
+                }
+                StoredResponse toStore = toStored(requestHash, response, now, expiresAt);
+                idempotencyRecordRepository.storeResponse(recordKey, toStore.statusCode(), toStore.body(), toStore.location());
+                return new Outcome(response, toStore);
+            });
+            stored = outcome.stored();
+            return outcome.response();
+        } catch (DataIntegrityViolationException e) {
+            // Either the key was already claimed and committed (on another instance or before a restart),
+            // or the write itself failed a constraint at commit
+            Optional<IdempotencyRecord> record = idempotencyRecordRepository.findById(recordKey);
+            if (record.isEmpty()) {
+                return ResponseEntity.badRequest().body("Error: " + e.getMostSpecificCause().getMessage());
+            }
+            if (record.get().getStatusCode() == null) {
+                return inProgress();
+            }
+            stored = StoredResponse.of(record.get());
+            return replay(stored, requestHash);
+        } finally {
+            if (stored == null) {
+                responses.remove(recordKey, claimed);
+            }
+            claimed.complete(stored);
+        }
+    }
+    
+    private ResponseEntity<?> executeAfterClaim(String recordKey, String requestHash, Supplier<ResponseEntity<?>> action,
+                                                CompletableFuture<StoredResponse> claimed) {
+        StoredResponse stored = null;
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime expiresAt = now.plus(Duration.ofMillis(ttlMs));
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    idempotencyRecordRepository.deleteIfExpired(recordKey, now);
+                    idempotencyRecordRepository.claim(recordKey, requestHash, now, expiresAt);
+                });
+            } catch (DataIntegrityViolationException e) {
+                Optional<IdempotencyRecord> record = idempotencyRecordRepository.findById(recordKey);
+                if (record.isEmpty() || record.get().getStatusCode() == null) {
+                    return inProgress();
+                }
+                stored = StoredResponse.of(record.get());
+                return replay(stored, requestHash);
+            }
+            
+            ResponseEntity<?> response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.release(recordKey));
+                throw e;
+            }
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.release(recordKey));
+                return response;
+            }
+            
+            StoredResponse toStore = toStored(requestHash, response, now, expiresAt);
+            try {
+                transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.storeResponse(
+                        recordKey, toStore.statusCode(), toStore.body(), toStore.location()));
+                stored = toStore;
+            } catch (RuntimeException e) {
+                // The action has happened; the claim stays, so retries get 409 rather than repeating it
+                logger.warn("Could not store response for {} {}", HEADER, recordKey, e);
+            }
+            return response;
+        } finally {
+            if (stored == null) {
+                responses.remove(recordKey, claimed);
+            }
+            claimed.complete(stored);
+        }
+    }
+    
+    private StoredResponse toStored(String requestHash, ResponseEntity<?> response, LocalDateTime now,
+                                    LocalDateTime expiresAt) {
+        return new StoredResponse(requestHash, response.getStatusCode().value(), toJson(response.getBody()),
+                response.getHeaders().getLocation() != null ? response.getHeaders().getLocation().toString() : null,
+                now, expiresAt);
+    }
+    
+    private ResponseEntity<?> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Error: " + HEADER + " was already used for a different request");
+        }
+        replays.increment();
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(stored.statusCode())
+                .header(REPLAYED_HEADER, "true");
+        if (stored.location() != null) {
+            response.location(URI.create(stored.location()));
+        }
+        if (stored.body() == null) {
+            return response.build();
+        }
+        return response.contentType(MediaType.APPLICATION_JSON).body(stored.body());
+    }
+    
+    private ResponseEntity<?> inProgress() {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body("Error: A request with this " + HEADER + " is still in progress");
+    }
+    
+    private String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.isAuthenticated() ? authentication.getName() : "anonymous";
+    }
+    
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not hash request for " + HEADER, e);
+        }
+    }
+    
+    private String toJson(Object body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store response for " + HEADER, e);
+        }
+    }
+    
+    private record Outcome(ResponseEntity<?> response, StoredResponse stored) {
+    }
+    
+    private record StoredResponse(String requestHash, int statusCode, String body, String location,
+                                  LocalDateTime storedAt, LocalDateTime expiresAt) {
+        
+        static StoredResponse of(IdempotencyRecord record) {
+            return new StoredResponse(record.getRequestHash(), record.getStatusCode(), record.getResponseBody(),
+                    record.getLocation(), record.getCreatedAt(), record.getExpiresAt());
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package com.milkmanagement.service;
+
+import com.milkmanagement.entity.Product;
+import com.milkmanagement.entity.Stock;
+import com.milkmanagement.entity.StockJournalCheckpoint;
+import com.milkmanagement.entity.StockMovement;
+import com.milkmanagement.event.CatalogChangedEvent;
+import com.milkmanagement.repository.ProductRepository;
+import com.milkmanagement.repository.StockJournalCheckpointRepository;
+import com.milkmanagement.repository.StockRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stock engine that keeps per-product quantities in memory (stock.engine=memory).
+ *
+ * Availability checks and decrements take a lock striped by product id and
+ * never touch the database. Decrements are applied to the in-memory
+ * quantities at once, so concurrent orders cannot oversell; additions become
+ * visible only once their transaction commits, so nothing can be sold
+ * against stock that may still roll back. When the surrounding transaction
+ * commits, its deltas are appended to a local journal (one fsync per
+ * transaction) and queued for write-behind; if it rolls back, the decrements
+ * are restored. Every stock.flush-interval-ms the queued deltas are summed per
+ * product and applied to the stock table in one transaction, together with
+ * their stock movements and the journal sequence they cover. On startup
+ * quantities are loaded from the stock table and journal entries after that
+ * sequence are replayed, so a crash loses nothing that was committed.
+ *
+ * A commit that fails after its deltas were journaled appends compensating
+ * entries. A crash in that window leaves stock understated, never overstated.
+ *
+ * Other readers of the stock table and of the movement history, such as the
+ * product catalog and point-in-time stock, lag by up to one flush interval.
+ */
+@Service
+@ConditionalOnProperty(name = "stock.engine", havingValue = "memory")
+public class InMemoryStockLedger implements StockLedger {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryStockLedger.class);
+    
+    private static final int STRIPES = 64;
+    
+    @Autowired
+    private StockRepository stockRepository;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private StockJournalCheckpointRepository checkpointRepository;
+    
+    @Autowired
+    private StockHistoryService stockHistoryService;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Value("${stock.journal.path:data/stock.journal}")
+    private String journalPath;
+    
+    private final Object[] stripes = new Object[STRIPES];
+    private final Map<Long, BigDecimal> quantities = new ConcurrentHashMap<>();
+    
+    // Guards the journal file, the sequence and the entries not yet written to the database
+    private final Object journalLock = new Object();
+    private FileChannel journal;
+    private long sequence;
+    private List<JournalEntry> unflushed = new ArrayList<>();
+    
+    private TransactionTemplate transactionTemplate;
+    
+    public InMemoryStockLedger() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+    
+    @PostConstruct
+    public void recover() throws IOException {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        
+        long checkpoint = transactionTemplate.execute(status -> {
+            for (Stock stock : stockRepository.findAll()) {
+                quantities.put(stock.getProduct().getId(), stock.getQuantity());
+            }
+            return checkpointRepository.findById(StockJournalCheckpoint.SINGLETON_ID)
+                    .map(StockJournalCheckpoint::getLastSequence)
+                    .orElse(0L);
+        });
+        sequence = checkpoint;
+        
+        Path path = Path.of(journalPath);
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        
+        int replayed = 0;
+        for (String line : JournalLines.readComplete(path)) {
+            JournalEntry entry = JournalEntry.parse(line);
+            if (entry == null) {
+                logger.warn("Skipping malformed stock journal line: {}", line);
+                continue;
+            }
+            if (entry.sequence() > checkpoint) {
+                quantities.merge(entry.productId(), entry.delta(), BigDecimal::add);
+                unflushed.add(entry);
+                replayed++;
+            }
+            sequence = Math.max(sequence, entry.sequence());
+        }
+        
+        journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logger.info("In-memory stock ledger loaded {} products, replayed {} journal entries after sequence {}",
+                quantities.size(), replayed, checkpoint);
+    }
+    
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        synchronized (journalLock) {
+            journal.close();
+        }
+    }
+    
+    @Override
+    public boolean decrementsVisibleBeforeCommit() {
+        return true;
+    }
+    
+    @Override
+    public BigDecimal available(Long productId) {
+        return quantities.getOrDefault(productId, BigDecimal.ZERO);
+    }
+    
+    @Override
+    public Map<Long, BigDecimal> available(Collection<Long> productIds) {
+        Map<Long, BigDecimal> available = new HashMap<>();
+        productIds.forEach(productId -> available.put(productId, available(productId)));
+        return available;
+    }
+    
+    @Override
+    public void add(Product product, BigDecimal delta, StockMovement.Reason reason, Long referenceId) {
+        ensureKnown(product);
+        if (delta.signum() < 0) {
+            synchronized (stripe(product.getId())) {
+                quantities.merge(product.getId(), delta, BigDecimal::add);
+            }
+        }
+        record(new Change(product.getId(), delta, reason, referenceId, LocalDateTime.now()));
+    }
+    
+    // Write-behind already nets each product's deltas into one UPDATE, so only the movements are per delta
+    @Override
+    public void addAll(Product product, Map<Long, BigDecimal> deltasByReference, StockMovement.Reason reason) {
+        deltasByReference.forEach((referenceId, delta) -> add(product, delta, reason, referenceId));
+    }
+    
+    @Override
+    public boolean tryDecrement(Long productId, BigDecimal quantity, StockMovement.Reason reason, Long referenceId) {
+        synchronized (stripe(productId)) {
+            BigDecimal current = quantities.get(productId);
+            if (current == null || current.compareTo(quantity) < 0) {
+                return false;
+            }
+            quantities.put(productId, current.subtract(quantity));
+        }
+        record(new Change(productId, quantity.negate(), reason, referenceId, LocalDateTime.now()));
+        return true;
+    }
+    
+    @Override
+    public void decrementClampedAtZero(Long productId, BigDecimal quantity, StockMovement.Reason reason,
+                                       Long referenceId) {
+        BigDecimal delta;
+        synchronized (stripe(productId)) {
+            BigDecimal current = quantities.get(productId);
+            if (current == null) {
+                return;
+            }
+            delta = current.min(quantity).max(BigDecimal.ZERO).negate();
+            quantities.put(productId, current.add(delta));
+        }
+        record(new Change(productId, delta, reason, referenceId, LocalDateTime.now()));
+    }
+    
+    @Override
+    public void setQuantity(Product product, BigDecimal quantity) {
+        ensureKnown(product);
+        setKnownQuantity(product.getId(), quantity);
+    }
+    
+    @Override
+    public void setQuantities(Collection<Long> productIds, BigDecimal quantity) {
+        for (Long productId : productIds) {
+            if (quantities.containsKey(productId)) {
+                setKnownQuantity(productId, quantity);
+            }
+        }
+    }
+    
+    // Write-behind: net deltas per product and their movements in one transaction, with the journal sequence they cover
+    @Scheduled(fixedDelayString = "${stock.flush-interval-ms:500}")
+    public synchronized void flush() {
+        List<JournalEntry> batch;
+        synchronized (journalLock) {
+            if (unflushed.isEmpty()) {
+                return;
+            }
+            batch = unflushed;
+            unflushed = new ArrayList<>();
+        }
+        
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+        } catch (RuntimeException e) {
+            synchronized (journalLock) {
+                batch.addAll(unflushed);
+                unflushed = batch;
+            }
+            logger.error("Stock write-behind failed, retrying on the next cycle", e);
+            return;
+        }
+        
+        compactJournal();
+    }
+    
+    private void writeBatch(List<JournalEntry> batch) {
+        // Product id order, the same order orders lock stock rows in
+        Map<Long, BigDecimal> netDeltas = new TreeMap<>();
+        for (JournalEntry entry : batch) {
+            netDeltas.merge(entry.productId(), entry.delta(), BigDecimal::add);
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        Set<Long> dropped = new HashSet<>();
+        for (Map.Entry<Long, BigDecimal> entry : netDeltas.entrySet()) {
+            Long productId = entry.getKey();
+            BigDecimal delta = entry.getValue();
+            if (stockRepository.adjustQuantity(productId, delta, now) > 0) {
+                continue;
+            }
+            // The row was created by a transaction that rolled back after the product became known here
+            if (productRepository.existsById(productId)) {
+                Stock stock = new Stock();
+                stock.setProduct(productRepository.getReferenceById(productId));
+                stock.setQuantity(delta);
+                stockRepository.save(stock);
+            } else {
+                logger.warn("Dropping stock delta {} for deleted product {}", delta, productId);
+                dropped.add(productId);
+            }
+        }
+        
+        // Recorded after the UPDATEs so each product's stock row is locked, as StockHistoryService expects
+        List<StockMovement> movements = new ArrayList<>(batch.size());
+        for (JournalEntry entry : batch) {
+            if (!dropped.contains(entry.productId())) {
+                movements.add(new StockMovement(entry.productId(), entry.delta(), entry.reason(),
+                        entry.referenceId(), entry.occurredAt()));
+            }
+        }
+        stockHistoryService.recordAll(movements);
+        
+        long flushedSequence = batch.get(batch.size() - 1).sequence();
+        checkpointRepository.save(new StockJournalCheckpoint(StockJournalCheckpoint.SINGLETON_ID, flushedSequence, now));
+        
+        // The catalog reads the stock table, so it refreshes once the flush commits
+        eventPublisher.publishEvent(CatalogChangedEvent.pricesUnchanged(netDeltas.keySet()));
+    }
+    
+    // Rewrites the journal as the entries still pending, dropping everything already in the database
+    private void compactJournal() {
+        synchronized (journalLock) {
+            Path path = Path.of(journalPath);
+            Path compacted = path.resolveSibling(path.getFileName() + ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    channel.write(ByteBuffer.wrap(JournalEntry.format(unflushed)));
+                    channel.force(false);
+                }
+                journal.close();
+                Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                logger.warn("Could not compact stock journal, it will keep growing until the next flush", e);
+            } finally {
+                reopenJournal(path);
+            }
+        }
+    }
+    
+    private void reopenJournal(Path path) {
+        if (journal.isOpen()) {
+            return;
+        }
+        try {
+            journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not reopen stock journal " + path, e);
+        }
+    }
+    
+    private void setKnownQuantity(Long productId, BigDecimal quantity) {
+        BigDecimal delta;
+        synchronized (stripe(productId)) {
+            BigDecimal current = quantities.getOrDefault(productId, BigDecimal.ZERO);
+            delta = quantity.subtract(current);
+            if (delta.signum() < 0) {
+                quantities.put(productId, quantity);
+            }
+        }
+        record(new Change(productId, delta, StockMovement.Reason.ADJUSTMENT, null, LocalDateTime.now()));
+    }
+    
+    // A product seen for the first time needs a stock row for write-behind to update
+    private void ensureKnown(Product product) {
+        if (quantities.containsKey(product.getId())) {
+            return;
+        }
+        if (stockRepository.findByProductId(product.getId()).isEmpty()) {
+            Stock stock = new Stock();
+            stock.setProduct(product);
+            stock.setQuantity(BigDecimal.ZERO);
+            stockRepository.save(stock);
+        }
+        quantities.putIfAbsent(product.getId(), BigDecimal.ZERO);
+    }
+    
+    private Object stripe(Long productId) {
+        return stripes[Math.floorMod(productId.hashCode(), STRIPES)];
+    }
+    
+    private void record(Change change) {
+        if (change.delta().signum() == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            commit(List.of(change));
+            publishAdditions(List.of(change));
+            return;
+        }
+        TransactionChanges changes = (TransactionChanges) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            changes = new TransactionChanges();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(changes);
+        }
+        changes.changes.add(change);
+    }
+    
+    // Journals the changes and queues them for write-behind
+    private void commit(List<Change> changes) {
+        synchronized (journalLock) {
+            List<JournalEntry> entries = new ArrayList<>(changes.size());
+            for (Change change : changes) {
+                entries.add(new JournalEntry(++sequence, change.productId(), change.delta(), change.reason(),
+                        change.referenceId(), change.occurredAt()));
+            }
+            try {
+                journal.write(ByteBuffer.wrap(JournalEntry.format(entries)));
+                journal.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write stock journal", e);
+            }
+            unflushed.addAll(entries);
+        }
+    }
+    
+    // Positive deltas reach the in-memory quantities only here, once their transaction has committed
+    private void publishAdditions(List<Change> changes) {
+        for (Change change : changes) {
+            if (change.delta().signum() > 0) {
+                synchronized (stripe(change.productId())) {
+                    quantities.merge(change.productId(), change.delta(), BigDecimal::add);
+                }
+            }
+        }
+    }
+    
+    // Restores the decrements of a transaction that did not commit; its additions were never applied
+    private void revert(List<Change> changes) {
+        for (Change change : changes) {
+            if (change.delta().signum() < 0) {
+                synchronized (stripe(change.productId())) {
+                    quantities.merge(change.productId(), change.delta().negate(), BigDecimal::add);
+                }
+            }
+        }
+    }
+    
+    private record Change(Long productId, BigDecimal delta, StockMovement.Reason reason, Long referenceId,
+                          LocalDateTime occurredAt) {
+    }
+    
+    // One journal line: sequence,productId,delta,reason,referenceId,occurredAt
+    private record JournalEntry(long sequence, Long productId, BigDecimal delta, StockMovement.Reason reason,
+                                Long referenceId, LocalDateTime occurredAt) {
+        
+        static byte[] format(List<JournalEntry> entries) {
+            StringBuilder lines = new StringBuilder();
+            for (JournalEntry entry : entries) {
+                lines.append(entry.sequence()).append(',')
+                        .append(entry.productId()).append(',')
+                        .append(entry.delta().toPlainString()).append(',')
+                        .append(entry.reason()).append(',')
+                        .append(entry.referenceId() != null ? entry.referenceId() : "").append(',')
+                        .append(entry.occurredAt()).append('\n');
+            }
+            return lines.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        
+        static JournalEntry parse(String line) {
+            String[] parts = line.split(",", -1);
+            try {
+                if (parts.length == 3) {
+                    // Written before entries carried a reason and time
+                    return new JournalEntry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), new BigDecimal(parts[2]),
+                            StockMovement.Reason.ADJUSTMENT, null, LocalDateTime.now());
+                }
+                if (parts.length != 6) {
+                    return null;
+                }
+                return new JournalEntry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), new BigDecimal(parts[2]),
+                        StockMovement.Reason.valueOf(parts[3]),
+                        parts[4].isEmpty() ? null : Long.parseLong(parts[4]),
+                        LocalDateTime.parse(parts[5]));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+    
+    // Collects one transaction's changes so they are journaled with a single fsync
+    private class TransactionChanges implements TransactionSynchronization {
+        
+        private final List<Change> changes = new ArrayList<>();
+        private boolean journaled;
+        
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            commit(changes);
+            journaled = true;
+        }
+        
+        @Override
+        public void afterCommit() {
+            publishAdditions(changes);
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(InMemoryStockLedger.this);
+            if (status == STATUS_COMMITTED) {
+                return;
+            }
+            revert(changes);
+            if (journaled) {
+                List<Change> compensation = new ArrayList<>(changes.size());
+                for (Change change : changes) {
+                    compensation.add(new Change(change.productId(), change.delta().negate(), change.reason(),
+                            change.referenceId(), LocalDateTime.now()));
+                }
+                commit(compensation);
+            }
+        }
+    }
+}
@@ -1,37 +1,75 @@
 package com.milkmanagement.service;
 
+import com.milkmanagement.cache.ProductCatalog;
+import com.milkmanagement.cache.ResourceVersions;
+import com.milkmanagement.dto.InventoryAggregateDTO;
+import com.milkmanagement.dto.InventoryBatchResultDTO;
+import com.milkmanagement.dto.InventoryDailyTotalDTO;
 import com.milkmanagement.dto.InventoryEntryDTO;
+import com.milkmanagement.dto.InventoryEntryPageDTO;
 import com.milkmanagement.dto.InventoryStatusDTO;
 import com.milkmanagement.dto.InventoryUpdateRequest;
+import com.milkmanagement.dto.ProductDTO;
 import com.milkmanagement.entity.InventoryEntry;
 import com.milkmanagement.entity.Product;
 import com.milkmanagement.entity.ProductPrice;
-import com.milkmanagement.entity.Stock;
+import com.milkmanagement.entity.StockMovement;
 import com.milkmanagement.entity.User;
+import com.milkmanagement.event.CatalogChangedEvent;
 import com.milkmanagement.repository.InventoryEntryRepository;
 import com.milkmanagement.repository.ProductPriceRepository;
 import com.milkmanagement.repository.ProductRepository;
-import com.milkmanagement.repository.StockRepository;
 import com.milkmanagement.repository.UserRepository;
+import com.milkmanagement.util.TimeGranularity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class InventoryService {
 
+    private static final int ENTRY_BATCH_SIZE = 100;
+
+    private static final int DEFAULT_ENTRY_WINDOW_DAYS = 28;
+
+    private static final int DEFAULT_AGGREGATE_RANGE_DAYS = 30;
+
+    private static final String INSERT_ENTRY_SQL = "INSERT INTO inventory_entries " +
+            "(product_id, entry_date, total_liters_received, price_per_litre, created_by, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
     @Autowired
     private ProductRepository productRepository;
 
     @Autowired
-    private StockRepository stockRepository;
+    private StockLedger stockLedger;
 
     @Autowired
     private ProductPriceRepository productPriceRepository;
@@ -42,6 +80,18 @@ public class InventoryService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductCatalog productCatalog;
+
     @Transactional(readOnly = true)
     public InventoryStatusDTO getInventoryStatus(Long productId) {
         Product product = resolveProduct(productId);
@@ -49,8 +99,7 @@ public class InventoryService {
             return null;
         }
 
-        Stock stock = stockRepository.findByProductId(product.getId()).orElse(null);
-        BigDecimal available = stock != null ? stock.getQuantity() : BigDecimal.ZERO;
+        BigDecimal available = stockLedger.available(product.getId());
 
         ProductPrice latestPrice = productPriceRepository.findLatestActivePrice(product).orElse(null);
         BigDecimal pricePerLitre = latestPrice != null ? latestPrice.getPricePerUnit() : BigDecimal.ZERO;
@@ -65,6 +114,22 @@ public class InventoryService {
         );
     }
 
+    // Every product from the catalog snapshot, which is one join over products, stock and active prices
+    // reloaded after each committed stock or price write; no query per call
+    public List<InventoryStatusDTO> getAllInventoryStatuses() {
+        LocalDate today = LocalDate.now();
+        return productCatalog.snapshot().products().stream()
+                .map(product -> new InventoryStatusDTO(
+                        product.getId(),
+                        product.getName(),
+                        today,
+                        product.getQuantity(),
+                        product.getQuantity(),
+                        product.getPricePerUnit()
+                ))
+                .collect(Collectors.toList());
+    }
+
     @Transactional
     public InventoryStatusDTO updateInventory(InventoryUpdateRequest request) {
         Product product = productRepository.findById(request.getProductId())
@@ -78,23 +143,12 @@ public class InventoryService {
         entry.setPricePerLitre(request.getPricePerLitre());
         
         // Set created by user
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated()) {
-            String username = authentication.getName();
-            User user = userRepository.findByUsername(username).orElse(null);
-            entry.setCreatedBy(user);
-        }
+        entry.setCreatedBy(currentUser());
         
         inventoryEntryRepository.save(entry);
 
         // Update stock: add received liters
-        Stock stock = stockRepository.findByProductId(product.getId()).orElse(new Stock());
-        if (stock.getProduct() == null) {
-            stock.setProduct(product);
-        }
-        BigDecimal currentQty = stock.getQuantity() != null ? stock.getQuantity() : BigDecimal.ZERO;
-        stock.setQuantity(currentQty.add(request.getTotalLitersReceived()));
-        stockRepository.save(stock);
+        stockLedger.add(product, request.getTotalLitersReceived(), StockMovement.Reason.RECEIPT, entry.getId());
 
         // Update price if changed
         ProductPrice existingPrice = productPriceRepository.findLatestActivePrice(product).orElse(null);
@@ -113,20 +167,168 @@ public class InventoryService {
             productPriceRepository.save(newPrice);
         }
 
+        eventPublisher.publishEvent(CatalogChangedEvent.product(product.getId()));
+        resourceVersions.bump(ResourceVersions.Resource.INVENTORY);
+
         return getInventoryStatus(product.getId());
     }
 
+    // Morning collection in one transaction: products and user resolved once, entries inserted as one JDBC batch,
+    // one stock change per product (with a movement per entry) and at most one price change per product
+    @Transactional
+    public InventoryBatchResultDTO recordInventoryBatch(List<InventoryUpdateRequest> requests) {
+        Set<Long> productIds = requests.stream()
+                .map(InventoryUpdateRequest::getProductId)
+                .collect(Collectors.toCollection(TreeSet::new));
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                throw new RuntimeException("Product not found with id: " + productId);
+            }
+        }
+
+        List<Long> entryIds = insertEntries(requests, currentUser());
+
+        // The price of a product's latest-dated entry wins; later entries break ties
+        Map<Long, Map<Long, BigDecimal>> receivedByEntry = new TreeMap<>();
+        Map<Long, InventoryUpdateRequest> latestByProduct = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            InventoryUpdateRequest request = requests.get(i);
+            receivedByEntry.computeIfAbsent(request.getProductId(), productId -> new LinkedHashMap<>())
+                    .put(entryIds.get(i), request.getTotalLitersReceived());
+            latestByProduct.merge(request.getProductId(), request,
+                    (current, next) -> entryDate(next).isBefore(entryDate(current)) ? current : next);
+        }
+
+        for (Map.Entry<Long, Map<Long, BigDecimal>> received : receivedByEntry.entrySet()) {
+            stockLedger.addAll(products.get(received.getKey()), received.getValue(), StockMovement.Reason.RECEIPT_BATCH);
+        }
+
+        Map<Long, ProductPrice> activePrices = new HashMap<>();
+        for (ProductPrice price : productPriceRepository.findActiveByProductIds(productIds)) {
+            activePrices.putIfAbsent(price.getProduct().getId(), price);
+        }
+
+        boolean pricesChanged = false;
+        Map<Long, BigDecimal> prices = new HashMap<>();
+        for (Long productId : productIds) {
+            InventoryUpdateRequest latest = latestByProduct.get(productId);
+            ProductPrice existingPrice = activePrices.get(productId);
+            prices.put(productId, latest.getPricePerLitre());
+            if (existingPrice != null && existingPrice.getPricePerUnit().compareTo(latest.getPricePerLitre()) == 0) {
+                continue;
+            }
+            if (existingPrice != null) {
+                existingPrice.setIsActive(false);
+                existingPrice.setEffectiveTo(LocalDate.now());
+                productPriceRepository.save(existingPrice);
+            }
+
+            ProductPrice newPrice = new ProductPrice();
+            newPrice.setProduct(products.get(productId));
+            newPrice.setPricePerUnit(latest.getPricePerLitre());
+            newPrice.setEffectiveFrom(entryDate(latest));
+            newPrice.setIsActive(true);
+            productPriceRepository.save(newPrice);
+            pricesChanged = true;
+        }
+
+        eventPublisher.publishEvent(pricesChanged
+                ? CatalogChangedEvent.products(productIds)
+                : CatalogChangedEvent.pricesUnchanged(productIds));
+        resourceVersions.bump(ResourceVersions.Resource.INVENTORY);
+
+        List<InventoryStatusDTO> statuses = productIds.stream()
+                .map(productId -> {
+                    BigDecimal available = stockLedger.available(productId);
+                    return new InventoryStatusDTO(productId, products.get(productId).getName(), LocalDate.now(),
+                            available, available, prices.get(productId));
+                })
+                .collect(Collectors.toList());
+        return new InventoryBatchResultDTO(requests.size(), statuses);
+    }
+
+    // One page of entries in [fromDate, toDate], newest first; the cursor is "entryDate:id" of the last entry returned
     @Transactional(readOnly = true)
-    public List<InventoryEntryDTO> getAllInventoryEntries(Long productId) {
+    public InventoryEntryPageDTO getInventoryEntries(Long productId, LocalDate fromDate, LocalDate toDate,
+                                                     String cursor, int limit) {
+        LocalDate to = toDate != null ? toDate : LocalDate.now();
+        LocalDate from = fromDate != null ? fromDate : to.minusDays(DEFAULT_ENTRY_WINDOW_DAYS - 1);
+        if (from.isAfter(to)) {
+            throw new RuntimeException("fromDate must not be after toDate");
+        }
+
+        LocalDate afterDate = to;
+        long afterId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = cursor.split(":");
+            try {
+                afterDate = LocalDate.parse(parts[0]);
+                afterId = Long.parseLong(parts[1]);
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Invalid cursor: " + cursor);
+            }
+        }
+
+        // One extra row tells whether another page follows
+        PageRequest page = PageRequest.of(0, limit + 1);
         List<InventoryEntry> entries;
         if (productId != null) {
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
-            entries = inventoryEntryRepository.findByProductOrderByDateDesc(product);
+            if (!productRepository.existsById(productId)) {
+                throw new RuntimeException("Product not found with id: " + productId);
+            }
+            entries = inventoryEntryRepository.findPageByProduct(productId, from, to, afterDate, afterId, page);
         } else {
-            entries = inventoryEntryRepository.findAllOrderByDateDesc();
+            entries = inventoryEntryRepository.findPage(from, to, afterDate, afterId, page);
+        }
+
+        String nextCursor = null;
+        if (entries.size() > limit) {
+            entries = entries.subList(0, limit);
+            InventoryEntry last = entries.get(limit - 1);
+            nextCursor = last.getEntryDate() + ":" + last.getId();
+        }
+        return new InventoryEntryPageDTO(entries.stream().map(this::convertToDTO).collect(Collectors.toList()), nextCursor);
+    }
+
+    // Received litres and litre-weighted purchase price per product and period; SQL sums per day, days fold into periods here
+    @Transactional(readOnly = true)
+    public List<InventoryAggregateDTO> getInventoryAggregates(LocalDate fromDate, LocalDate toDate,
+                                                              TimeGranularity granularity, Long productId) {
+        LocalDate to = toDate != null ? toDate : LocalDate.now();
+        LocalDate from = fromDate != null ? fromDate : to.minusDays(DEFAULT_AGGREGATE_RANGE_DAYS - 1);
+        if (from.isAfter(to)) {
+            throw new RuntimeException("fromDate must not be after toDate");
         }
-        return entries.stream().map(this::convertToDTO).collect(Collectors.toList());
+
+        // period start -> product id -> totals, dated by the period start
+        Map<LocalDate, Map<Long, InventoryDailyTotalDTO>> periods = new TreeMap<>();
+        for (InventoryDailyTotalDTO day : inventoryEntryRepository.sumByProductAndDay(from, to, productId)) {
+            LocalDate periodStart = granularity.bucketStart(day.getEntryDate());
+            InventoryDailyTotalDTO totals = periods
+                    .computeIfAbsent(periodStart, start -> new TreeMap<>())
+                    .computeIfAbsent(day.getProductId(),
+                            id -> new InventoryDailyTotalDTO(id, periodStart, BigDecimal.ZERO, BigDecimal.ZERO, 0L));
+            totals.setLitres(totals.getLitres().add(day.getLitres()));
+            totals.setCost(totals.getCost().add(day.getCost()));
+            totals.setEntryCount(totals.getEntryCount() + day.getEntryCount());
+        }
+
+        Set<Long> productIds = new TreeSet<>();
+        periods.values().forEach(byProduct -> productIds.addAll(byProduct.keySet()));
+        Map<Long, String> productNames = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Product::getName));
+
+        List<InventoryAggregateDTO> aggregates = new ArrayList<>();
+        periods.forEach((periodStart, byProduct) -> byProduct.forEach((id, totals) -> {
+            BigDecimal averagePrice = totals.getLitres().signum() == 0
+                    ? BigDecimal.ZERO
+                    : totals.getCost().divide(totals.getLitres(), 2, RoundingMode.HALF_UP);
+            aggregates.add(new InventoryAggregateDTO(id, productNames.get(id), periodStart,
+                    granularity.bucketEnd(periodStart), totals.getLitres(), averagePrice, totals.getEntryCount()));
+        }));
+        return aggregates;
     }
 
     @Transactional(readOnly = true)
@@ -157,13 +359,7 @@ public class InventoryService {
         inventoryEntryRepository.save(entry);
 
         // Update stock with difference
-        Stock stock = stockRepository.findByProductId(product.getId()).orElse(new Stock());
-        if (stock.getProduct() == null) {
-            stock.setProduct(product);
-        }
-        BigDecimal currentQty = stock.getQuantity() != null ? stock.getQuantity() : BigDecimal.ZERO;
-        stock.setQuantity(currentQty.add(difference));
-        stockRepository.save(stock);
+        stockLedger.add(product, difference, StockMovement.Reason.RECEIPT_EDIT, entry.getId());
 
         // Update price if changed
         ProductPrice existingPrice = productPriceRepository.findLatestActivePrice(product).orElse(null);
@@ -182,6 +378,9 @@ public class InventoryService {
             productPriceRepository.save(newPrice);
         }
 
+        eventPublisher.publishEvent(CatalogChangedEvent.product(product.getId()));
+        resourceVersions.bump(ResourceVersions.Resource.INVENTORY);
+
         return convertToDTO(entry);
     }
 
@@ -192,18 +391,12 @@ public class InventoryService {
 
         // Subtract from stock
         Product product = entry.getProduct();
-        Stock stock = stockRepository.findByProductId(product.getId()).orElse(null);
-        if (stock != null && stock.getQuantity() != null) {
-            BigDecimal currentQty = stock.getQuantity();
-            BigDecimal newQty = currentQty.subtract(entry.getTotalLitersReceived());
-            if (newQty.compareTo(BigDecimal.ZERO) < 0) {
-                newQty = BigDecimal.ZERO;
-            }
-            stock.setQuantity(newQty);
-            stockRepository.save(stock);
-        }
+        stockLedger.decrementClampedAtZero(product.getId(), entry.getTotalLitersReceived(),
+                StockMovement.Reason.RECEIPT_DELETE, entry.getId());
 
         inventoryEntryRepository.delete(entry);
+        eventPublisher.publishEvent(CatalogChangedEvent.pricesUnchanged(List.of(product.getId())));
+        resourceVersions.bump(ResourceVersions.Resource.INVENTORY);
     }
 
     private InventoryEntryDTO convertToDTO(InventoryEntry entry) {
@@ -219,11 +412,65 @@ public class InventoryService {
         );
     }
 
+    // Runs on the transaction's connection; the entries are not loaded into the persistence context.
+    // Returns the generated ids in request order
+    private List<Long> insertEntries(List<InventoryUpdateRequest> requests, User createdBy) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> ids = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            List<Long> generated = new ArrayList<>(requests.size());
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_ENTRY_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (int start = 0; start < requests.size(); start += ENTRY_BATCH_SIZE) {
+                    for (InventoryUpdateRequest request : requests.subList(start, Math.min(start + ENTRY_BATCH_SIZE, requests.size()))) {
+                        ps.setLong(1, request.getProductId());
+                        ps.setDate(2, Date.valueOf(entryDate(request)));
+                        ps.setBigDecimal(3, request.getTotalLitersReceived());
+                        ps.setBigDecimal(4, request.getPricePerLitre());
+                        if (createdBy != null) {
+                            ps.setLong(5, createdBy.getId());
+                        } else {
+                            ps.setNull(5, Types.BIGINT);
+                        }
+                        ps.setTimestamp(6, now);
+                        ps.setTimestamp(7, now);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        while (keys.next()) {
+                            generated.add(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return generated;
+        });
+        if (ids == null || ids.size() != requests.size()) {
+            throw new IllegalStateException("Expected " + requests.size() + " generated inventory entry ids");
+        }
+        return ids;
+    }
+
+    private LocalDate entryDate(InventoryUpdateRequest request) {
+        return request.getDate() != null ? request.getDate() : LocalDate.now();
+    }
+
+    private User currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()) {
+            return userRepository.findByUsername(authentication.getName()).orElse(null);
+        }
+        return null;
+    }
+
     private Product resolveProduct(Long productId) {
         if (productId != null) {
             return productRepository.findById(productId).orElse(null);
         }
         // Fallback: pick first product if available
-        return productRepository.findAll().stream().findFirst().orElse(null);
+        return productCatalog.snapshot().products().stream()
+                .findFirst()
+                .map(ProductDTO::getId)
+                .flatMap(productRepository::findById)
+                .orElse(null);
     }
 }
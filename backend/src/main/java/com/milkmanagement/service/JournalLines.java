@@ -0,0 +1,47 @@
+package com.milkmanagement.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads back the newline-terminated journals written by the stock ledger and
+ * the order intake queue.
+ *
+ * Records are appended newline-terminated and forced to disk before they
+ * count, so a final line without its newline is a write cut short by a
+ * crash. It is left out and cut from the file; otherwise the next append
+ * would run on from it and corrupt the following record too.
+ */
+final class JournalLines {
+    
+    private JournalLines() {
+    }
+    
+    // The complete lines of the journal in order; none when the file does not exist yet
+    static List<String> readComplete(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return List.of();
+        }
+        byte[] content = Files.readAllBytes(path);
+        int end = content.length;
+        while (end > 0 && content[end - 1] != '\n') {
+            end--;
+        }
+        if (end < content.length) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+        if (end == 0) {
+            return List.of();
+        }
+        // Without the final newline, so the split leaves no empty element after it
+        return Arrays.asList(new String(content, 0, end - 1, StandardCharsets.UTF_8).split("\n", -1));
+    }
+}
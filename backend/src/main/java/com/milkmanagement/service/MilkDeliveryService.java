@@ -1,31 +1,60 @@
 package com.milkmanagement.service;
 
+import com.milkmanagement.cache.PriceTimeline;
+import com.milkmanagement.cache.ProductCatalog;
+import com.milkmanagement.cache.ResourceVersions;
+import com.milkmanagement.dto.CustomerDeliveryPlanDTO;
+import com.milkmanagement.dto.DeliveryRunResultDTO;
+import com.milkmanagement.dto.DeliveryTotalsDTO;
 import com.milkmanagement.dto.MilkDeliveryDTO;
+import com.milkmanagement.dto.ProductDTO;
 import com.milkmanagement.entity.Customer;
 import com.milkmanagement.entity.MilkDelivery;
 import com.milkmanagement.entity.Product;
-import com.milkmanagement.entity.ProductPrice;
 import com.milkmanagement.entity.User;
+import com.milkmanagement.event.DashboardDataChangedEvent;
 import com.milkmanagement.repository.CustomerRepository;
 import com.milkmanagement.repository.MilkDeliveryRepository;
-import com.milkmanagement.repository.ProductPriceRepository;
 import com.milkmanagement.repository.ProductRepository;
 import com.milkmanagement.repository.StockRepository;
 import com.milkmanagement.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class MilkDeliveryService {
     
+    private static final int RUN_BATCH_SIZE = 500;
+    
+    // An existing (customer, product, date) row is left alone; unlike INSERT IGNORE this
+    // skips only duplicate keys and still fails on any other error
+    private static final String INSERT_RUN_DELIVERY_SQL = "INSERT INTO milk_deliveries " +
+            "(customer_id, product_id, delivery_date, quantity_delivered, price_per_unit, total_amount, " +
+            "delivered_by, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE id = id";
+    
     @Autowired
     private MilkDeliveryRepository milkDeliveryRepository;
     
@@ -35,15 +64,30 @@ public class MilkDeliveryService {
     @Autowired
     private ProductRepository productRepository;
     
-    @Autowired
-    private ProductPriceRepository productPriceRepository;
-    
     @Autowired
     private StockRepository stockRepository;
     
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private DailySalesSummaryService dailySalesSummaryService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private ResourceVersions resourceVersions;
+    
+    @Autowired
+    private PriceTimeline priceTimeline;
+    
+    @Autowired
+    private ProductCatalog productCatalog;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
     @Transactional(readOnly = true)
     public List<MilkDeliveryDTO> getAllDeliveries() {
         return milkDeliveryRepository.findAll().stream()
@@ -75,11 +119,14 @@ public class MilkDeliveryService {
         Product product = productRepository.findById(deliveryDTO.getProductId())
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + deliveryDTO.getProductId()));
         
+        LocalDate deliveryDate = deliveryDTO.getDeliveryDate() != null ? deliveryDTO.getDeliveryDate() : LocalDate.now();
+        
+        // Priced as of the delivery date, so back-dated deliveries use the price that applied then
         BigDecimal pricePerUnit = deliveryDTO.getPricePerUnit();
         if (pricePerUnit == null) {
-            ProductPrice productPrice = productPriceRepository.findLatestActivePrice(product)
-                    .orElseThrow(() -> new RuntimeException("No active price found for product: " + product.getName()));
-            pricePerUnit = productPrice.getPricePerUnit();
+            pricePerUnit = priceTimeline.priceOn(product.getId(), deliveryDate)
+                    .orElseThrow(() -> new RuntimeException("No price found for product: " + product.getName()
+                            + " on " + deliveryDate));
         }
         
         BigDecimal quantity = deliveryDTO.getQuantityDelivered();
@@ -88,7 +135,7 @@ public class MilkDeliveryService {
         MilkDelivery delivery = new MilkDelivery();
         delivery.setCustomer(customer);
         delivery.setProduct(product);
-        delivery.setDeliveryDate(deliveryDTO.getDeliveryDate() != null ? deliveryDTO.getDeliveryDate() : LocalDate.now());
+        delivery.setDeliveryDate(deliveryDate);
         delivery.setQuantityDelivered(quantity);
         delivery.setPricePerUnit(pricePerUnit);
         delivery.setTotalAmount(totalAmount);
@@ -102,10 +149,122 @@ public class MilkDeliveryService {
         }
         
         MilkDelivery savedDelivery = milkDeliveryRepository.save(delivery);
+        dailySalesSummaryService.recordDelivery(savedDelivery);
+        eventPublisher.publishEvent(DashboardDataChangedEvent.delivery(
+                savedDelivery.getDeliveryDate(), savedDelivery.getTotalAmount(), savedDelivery.getQuantityDelivered()));
+        resourceVersions.bump(ResourceVersions.Resource.DELIVERIES);
         
         return convertToDTO(savedDelivery);
     }
     
+    /**
+     * Creates the day's delivery for every active customer: their daily
+     * quantity of the product matching their milk type, priced as of the date.
+     * Deliveries already recorded for the date are kept as they are, so the
+     * run can be repeated safely.
+     */
+    @Transactional
+    public DeliveryRunResultDTO generateDailyRun(LocalDate date) {
+        List<CustomerDeliveryPlanDTO> plans = customerRepository.findDeliveryPlans(Customer.DeliveryStatus.ACTIVE);
+        
+        // The lowest-id product of each type stands for that milk type
+        Map<Product.ProductType, Long> productByType = new EnumMap<>(Product.ProductType.class);
+        for (ProductDTO product : productCatalog.snapshot().products()) {
+            if (product.getType() != null) {
+                productByType.putIfAbsent(Product.ProductType.valueOf(product.getType()), product.getId());
+            }
+        }
+        
+        // Prices resolved once per product rather than once per customer
+        Map<Long, Optional<BigDecimal>> prices = new HashMap<>();
+        List<RunDelivery> deliveries = new ArrayList<>(plans.size());
+        int skipped = 0;
+        for (CustomerDeliveryPlanDTO plan : plans) {
+            for (Map.Entry<Product.ProductType, BigDecimal> portion : portions(plan).entrySet()) {
+                Long productId = productByType.get(portion.getKey());
+                Optional<BigDecimal> price = productId != null
+                        ? prices.computeIfAbsent(productId, id -> priceTimeline.priceOn(id, date))
+                        : Optional.empty();
+                if (price.isEmpty()) {
+                    skipped++;
+                    continue;
+                }
+                deliveries.add(new RunDelivery(plan.getCustomerId(), productId, portion.getValue(), price.get()));
+            }
+        }
+        
+        Long deliveredBy = null;
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()) {
+            deliveredBy = userRepository.findByUsername(authentication.getName()).map(User::getId).orElse(null);
+        }
+        
+        // Totals before and after tell what the run added, whatever already existed
+        DeliveryTotalsDTO before = milkDeliveryRepository.getDeliveryTotalsByDateRange(date, date);
+        insertRunDeliveries(date, deliveries, deliveredBy);
+        DeliveryTotalsDTO after = milkDeliveryRepository.getDeliveryTotalsByDateRange(date, date);
+        
+        long created = count(after) - count(before);
+        BigDecimal quantity = orZero(after.getTotalQuantity()).subtract(orZero(before.getTotalQuantity()));
+        BigDecimal amount = orZero(after.getTotalAmount()).subtract(orZero(before.getTotalAmount()));
+        if (created > 0) {
+            dailySalesSummaryService.rebuildDeliveries(date);
+            eventPublisher.publishEvent(DashboardDataChangedEvent.deliveries(Set.of(date), amount, quantity, created));
+            resourceVersions.bump(ResourceVersions.Resource.DELIVERIES);
+        }
+        
+        return new DeliveryRunResultDTO(date, plans.size(), created, deliveries.size() - created, skipped,
+                quantity, amount);
+    }
+    
+    private void insertRunDeliveries(LocalDate date, List<RunDelivery> deliveries, Long deliveredBy) {
+        Date deliveryDate = Date.valueOf(date);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_RUN_DELIVERY_SQL, deliveries, RUN_BATCH_SIZE, (ps, delivery) -> {
+            ps.setLong(1, delivery.customerId());
+            ps.setLong(2, delivery.productId());
+            ps.setDate(3, deliveryDate);
+            ps.setBigDecimal(4, delivery.quantity());
+            ps.setBigDecimal(5, delivery.pricePerUnit());
+            ps.setBigDecimal(6, delivery.quantity().multiply(delivery.pricePerUnit()));
+            if (deliveredBy != null) {
+                ps.setLong(7, deliveredBy);
+            } else {
+                ps.setNull(7, Types.BIGINT);
+            }
+            ps.setTimestamp(8, now);
+            ps.setTimestamp(9, now);
+        });
+    }
+    
+    // BOTH splits the daily quantity evenly between cow and buffalo milk
+    private Map<Product.ProductType, BigDecimal> portions(CustomerDeliveryPlanDTO plan) {
+        Map<Product.ProductType, BigDecimal> portions = new EnumMap<>(Product.ProductType.class);
+        BigDecimal quantity = plan.getDailyMilkQuantity();
+        if (quantity == null || quantity.signum() <= 0 || plan.getMilkType() == null) {
+            return portions;
+        }
+        switch (plan.getMilkType()) {
+            case COW -> portions.put(Product.ProductType.COW_MILK, quantity);
+            case BUFFALO -> portions.put(Product.ProductType.BUFFALO_MILK, quantity);
+            case BOTH -> {
+                BigDecimal cow = quantity.divide(BigDecimal.valueOf(2), 2, RoundingMode.HALF_UP);
+                portions.put(Product.ProductType.COW_MILK, cow);
+                portions.put(Product.ProductType.BUFFALO_MILK, quantity.subtract(cow));
+            }
+        }
+        portions.values().removeIf(portion -> portion.signum() <= 0);
+        return portions;
+    }
+    
+    private long count(DeliveryTotalsDTO totals) {
+        return totals.getDeliveryCount() != null ? totals.getDeliveryCount() : 0;
+    }
+    
+    private BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+    
     private MilkDeliveryDTO convertToDTO(MilkDelivery delivery) {
         MilkDeliveryDTO dto = new MilkDeliveryDTO();
         dto.setId(delivery.getId());
@@ -123,4 +282,7 @@ public class MilkDeliveryService {
         dto.setProductName(delivery.getProduct().getName());
         return dto;
     }
+    
+    private record RunDelivery(Long customerId, Long productId, BigDecimal quantity, BigDecimal pricePerUnit) {
+    }
 }
@@ -0,0 +1,468 @@
+package com.milkmanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.milkmanagement.cache.ProductCatalog;
+import com.milkmanagement.dto.OrderDTO;
+import com.milkmanagement.dto.OrderIntakeStatusDTO;
+import com.milkmanagement.dto.OrderItemDTO;
+import com.milkmanagement.entity.Order;
+import com.milkmanagement.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous order intake (orders.intake.enabled=true). A submitted order is
+ * checked against the product catalog, appended to a local journal (fsynced)
+ * and queued, and the caller gets a reference to poll instead of waiting for
+ * the checkout transaction. Worker threads drain the queue in micro-batches of
+ * up to orders.intake.batch-size orders per transaction; when a batch fails,
+ * its orders are retried one per transaction so only the faulty ones are
+ * rejected. Database outages are retried rather than rejecting the order.
+ *
+ * The queue holds at most orders.intake.queue-capacity orders; beyond that
+ * submissions are refused so callers back off instead of piling up. On
+ * shutdown intake stops accepting and the workers drain what is queued for up
+ * to orders.intake.drain-timeout-ms. Orders still queued after that, or after
+ * a crash, are replayed from the journal on the next start. Each order stores
+ * its intake reference under a unique key, so an order whose commit was not
+ * journaled before a crash is recognised on replay rather than created again.
+ */
+@Service
+@ConditionalOnProperty(name = "orders.intake.enabled", havingValue = "true")
+public class OrderIntakeService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OrderIntakeService.class);
+    
+    public static final String QUEUED = "QUEUED";
+    public static final String CREATED = "CREATED";
+    public static final String REJECTED = "REJECTED";
+    
+    private static final long POLL_TIMEOUT_MS = 500;
+    private static final int COMPACT_AFTER_LINES = 10000;
+    
+    @Autowired
+    private OrderService orderService;
+    
+    @Autowired
+    private OrderRepository orderRepository;
+    
+    @Autowired
+    private ProductCatalog productCatalog;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${orders.intake.queue-capacity:1000}")
+    private int queueCapacity;
+    
+    @Value("${orders.intake.workers:2}")
+    private int workerCount;
+    
+    @Value("${orders.intake.batch-size:20}")
+    private int batchSize;
+    
+    @Value("${orders.intake.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+    
+    @Value("${orders.intake.drain-timeout-ms:30000}")
+    private long drainTimeoutMs;
+    
+    @Value("${orders.intake.status-retention-ms:3600000}")
+    private long statusRetentionMs;
+    
+    @Value("${orders.intake.journal.path:data/order-intake.journal}")
+    private String journalPath;
+    
+    // Unbounded so replayed orders always fit; submissions are bounded against queueCapacity instead
+    private final BlockingQueue<QueuedOrder> queue = new LinkedBlockingQueue<>();
+    private final Map<String, OrderIntakeStatusDTO> statuses = new ConcurrentHashMap<>();
+    
+    // Guards the journal file, the orders it still has to deliver and the accepting flag
+    private final Object journalLock = new Object();
+    private final Map<String, QueuedOrder> pending = new LinkedHashMap<>();
+    private FileChannel journal;
+    private int journalLines;
+    private int compactAtLines = COMPACT_AFTER_LINES;
+    private volatile boolean accepting;
+    
+    private TransactionTemplate batchTransaction;
+    private ExecutorService workers;
+    
+    private Counter enqueued;
+    private Counter refused;
+    private Counter created;
+    private Counter rejected;
+    private Timer batchTimer;
+    private Timer latency;
+    
+    @PostConstruct
+    public void start() throws IOException {
+        batchTransaction = new TransactionTemplate(transactionManager);
+        
+        enqueued = Counter.builder("orders.intake.enqueued").register(meterRegistry);
+        refused = Counter.builder("orders.intake.refused")
+                .description("Submissions turned away because the queue was full or intake was stopping")
+                .register(meterRegistry);
+        created = Counter.builder("orders.intake.created").register(meterRegistry);
+        rejected = Counter.builder("orders.intake.rejected").register(meterRegistry);
+        batchTimer = Timer.builder("orders.intake.batch").register(meterRegistry);
+        latency = Timer.builder("orders.intake.latency")
+                .description("Time from submission to the order being created or rejected")
+                .register(meterRegistry);
+        Gauge.builder("orders.intake.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("orders.intake.queue.remaining", queue, q -> Math.max(0, queueCapacity - q.size()))
+                .register(meterRegistry);
+        
+        recover();
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "order-intake-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        accepting = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::drain);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        synchronized (journalLock) {
+            accepting = false;
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(drainTimeoutMs, TimeUnit.MILLISECONDS)) {
+            logger.warn("Order intake did not drain within {} ms, {} queued orders stay in the journal for the next start",
+                    drainTimeoutMs, queue.size());
+            workers.shutdownNow();
+            workers.awaitTermination(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        synchronized (journalLock) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.warn("Could not close order intake journal", e);
+            }
+        }
+    }
+    
+    /**
+     * Queues the order for creation as the given user and returns its QUEUED
+     * status. Throws IllegalStateException when the queue is full or intake is
+     * shutting down; the order was not taken and should be resubmitted later.
+     */
+    public OrderIntakeStatusDTO enqueue(OrderDTO orderDTO, String username) {
+        validate(orderDTO);
+        
+        String reference = UUID.randomUUID().toString();
+        OrderIntakeStatusDTO status = new OrderIntakeStatusDTO(reference, QUEUED, null, null, LocalDateTime.now(), null);
+        QueuedOrder queued = new QueuedOrder(status, username, orderDTO);
+        synchronized (journalLock) {
+            if (!accepting) {
+                refused.increment();
+                throw new IllegalStateException("Order intake is shutting down");
+            }
+            if (queue.size() >= queueCapacity) {
+                refused.increment();
+                throw new IllegalStateException("Order intake queue is full");
+            }
+            try {
+                append(List.of(queued.toRecord()));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not write order intake journal", e);
+            }
+            pending.put(reference, queued);
+            statuses.put(reference, status);
+            queue.add(queued);
+        }
+        enqueued.increment();
+        return status;
+    }
+    
+    public OrderIntakeStatusDTO getStatus(String reference) {
+        OrderIntakeStatusDTO status = statuses.get(reference);
+        if (status == null) {
+            throw new RuntimeException("Order intake reference not found: " + reference);
+        }
+        return status;
+    }
+    
+    // Forgets outcomes older than the retention window; compaction then drops them from the journal
+    @Scheduled(fixedDelayString = "${orders.intake.status-sweep-interval-ms:60000}")
+    public void expireStatuses() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(statusRetentionMs));
+        statuses.values().removeIf(status -> status.getCompletedAt() != null && status.getCompletedAt().isBefore(cutoff));
+    }
+    
+    // Cheap checks against the in-memory catalog so obviously bad orders are refused before they are queued
+    private void validate(OrderDTO orderDTO) {
+        if (orderDTO.getItems() == null || orderDTO.getItems().isEmpty()) {
+            throw new RuntimeException("Order has no items");
+        }
+        ProductCatalog.Snapshot catalog = productCatalog.snapshot();
+        for (OrderItemDTO item : orderDTO.getItems()) {
+            if (item.getProductId() == null || item.getQuantity() == null || item.getPrice() == null) {
+                throw new RuntimeException("Order items need a productId, quantity and price");
+            }
+            if (item.getQuantity().signum() <= 0) {
+                throw new RuntimeException("Order item quantity must be positive");
+            }
+            if (catalog.find(item.getProductId()).isEmpty()) {
+                throw new RuntimeException("Product not found: " + item.getProductId());
+            }
+        }
+    }
+    
+    // Worker loop: keeps draining after intake stops accepting, until the queue is empty
+    private void drain() {
+        List<QueuedOrder> batch = new ArrayList<>(batchSize);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                QueuedOrder first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Order intake worker failed on a batch of {} orders", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+    
+    private void process(List<QueuedOrder> batch) throws InterruptedException {
+        if (batch.size() == 1) {
+            processAlone(batch.get(0));
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<OrderDTO> createdOrders;
+        try {
+            createdOrders = batchTransaction.execute(status -> {
+                List<OrderDTO> orders = new ArrayList<>(batch.size());
+                for (QueuedOrder queued : batch) {
+                    orders.add(orderService.createOrder(queued.order(), queued.username(), queued.reference()));
+                }
+                return orders;
+            });
+        } catch (RuntimeException e) {
+            // One bad order rolls back the whole batch; retry each alone so only the bad ones are rejected
+            logger.debug("Order intake batch of {} failed, retrying one order per transaction", batch.size(), e);
+            for (QueuedOrder queued : batch) {
+                processAlone(queued);
+            }
+            return;
+        } finally {
+            sample.stop(batchTimer);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i), CREATED, createdOrders.get(i).getId(), null);
+        }
+    }
+    
+    private void processAlone(QueuedOrder queued) throws InterruptedException {
+        while (true) {
+            try {
+                OrderDTO order = orderService.createOrder(queued.order(), queued.username(), queued.reference());
+                complete(queued, CREATED, order.getId(), null);
+                return;
+            } catch (TransientDataAccessException | CannotCreateTransactionException e) {
+                // The database, not the order, is at fault: keep the order and try again
+                if (!accepting) {
+                    logger.warn("Leaving order {} in the intake journal for the next start", queued.reference(), e);
+                    return;
+                }
+                logger.warn("Could not create queued order {}, retrying in {} ms", queued.reference(), retryBackoffMs, e);
+                Thread.sleep(retryBackoffMs);
+            } catch (RuntimeException e) {
+                complete(queued, REJECTED, null, e.getMessage());
+                return;
+            }
+        }
+    }
+    
+    private void complete(QueuedOrder queued, String outcome, Long orderId, String error) {
+        OrderIntakeStatusDTO status = new OrderIntakeStatusDTO(queued.reference(), outcome, orderId, error,
+                queued.status().getReceivedAt(), LocalDateTime.now());
+        synchronized (journalLock) {
+            try {
+                append(List.of(new JournalRecord(status, null, null)));
+            } catch (IOException e) {
+                // The outcome is in the database; a replay finds created orders by reference and retries rejected ones
+                logger.warn("Could not journal the outcome of queued order {}", queued.reference(), e);
+            }
+            pending.remove(queued.reference());
+            statuses.put(queued.reference(), status);
+            if (journalLines >= compactAtLines) {
+                compactJournal();
+            }
+        }
+        (CREATED.equals(outcome) ? created : rejected).increment();
+        latency.record(Duration.between(status.getReceivedAt(), status.getCompletedAt()));
+    }
+    
+    private void recover() throws IOException {
+        Path path = Path.of(journalPath);
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        
+        for (String line : JournalLines.readComplete(path)) {
+            JournalRecord record;
+            try {
+                record = objectMapper.readValue(line, JournalRecord.class);
+            } catch (IOException e) {
+                logger.warn("Skipping malformed order intake journal line: {}", line);
+                continue;
+            }
+            String reference = record.status().getReference();
+            statuses.put(reference, record.status());
+            if (QUEUED.equals(record.status().getStatus())) {
+                pending.put(reference, new QueuedOrder(record.status(), record.username(), record.order()));
+            } else {
+                pending.remove(reference);
+            }
+        }
+        
+        // Orders that committed before their outcome reached the journal
+        if (!pending.isEmpty()) {
+            List<Order> alreadyCreated = new TransactionTemplate(transactionManager)
+                    .execute(status -> orderRepository.findByIntakeReferenceIn(pending.keySet()));
+            for (Order order : alreadyCreated) {
+                QueuedOrder queued = pending.remove(order.getIntakeReference());
+                statuses.put(queued.reference(), new OrderIntakeStatusDTO(queued.reference(), CREATED, order.getId(),
+                        null, queued.status().getReceivedAt(), LocalDateTime.now()));
+            }
+        }
+        queue.addAll(pending.values());
+        
+        journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        compactJournal();
+        logger.info("Order intake replayed {} queued orders from {}", queue.size(), path);
+    }
+    
+    // Rewrites the journal as the orders still queued plus the outcomes still retained
+    private void compactJournal() {
+        List<JournalRecord> records = new ArrayList<>();
+        for (OrderIntakeStatusDTO status : statuses.values()) {
+            if (!QUEUED.equals(status.getStatus())) {
+                records.add(new JournalRecord(status, null, null));
+            }
+        }
+        for (QueuedOrder queued : pending.values()) {
+            records.add(queued.toRecord());
+        }
+        
+        Path path = Path.of(journalPath);
+        Path compacted = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(format(records)));
+                channel.force(false);
+            }
+            journal.close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journalLines = records.size();
+            // Retained outcomes alone can pass the threshold; wait until the journal has doubled again
+            compactAtLines = Math.max(COMPACT_AFTER_LINES, 2 * records.size());
+        } catch (IOException e) {
+            logger.warn("Could not compact order intake journal, it will keep growing until the next attempt", e);
+        } finally {
+            reopenJournal(path);
+        }
+    }
+    
+    private void reopenJournal(Path path) {
+        if (journal.isOpen()) {
+            return;
+        }
+        try {
+            journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not reopen order intake journal " + path, e);
+        }
+    }
+    
+    private void append(List<JournalRecord> records) throws IOException {
+        journal.write(ByteBuffer.wrap(format(records)));
+        journal.force(false);
+        journalLines += records.size();
+    }
+    
+    // One JSON object per line
+    private byte[] format(List<JournalRecord> records) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (JournalRecord record : records) {
+            lines.append(objectMapper.writeValueAsString(record)).append('\n');
+        }
+        return lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private record QueuedOrder(OrderIntakeStatusDTO status, String username, OrderDTO order) {
+        
+        String reference() {
+            return status.getReference();
+        }
+        
+        JournalRecord toRecord() {
+            return new JournalRecord(status, username, order);
+        }
+    }
+    
+    // A queued order carries the submitting user and the order; an outcome carries only its status
+    private record JournalRecord(OrderIntakeStatusDTO status, String username, OrderDTO order) {
+    }
+}
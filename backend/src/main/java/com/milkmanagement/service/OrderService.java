@@ -1,11 +1,13 @@
 package com.milkmanagement.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.milkmanagement.dto.OrderDTO;
 import com.milkmanagement.dto.OrderItemDTO;
+import com.milkmanagement.dto.RawJson;
 import com.milkmanagement.entity.*;
+import com.milkmanagement.event.CatalogChangedEvent;
 import com.milkmanagement.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -14,6 +16,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,9 +27,6 @@ public class OrderService {
     @Autowired
     private OrderRepository orderRepository;
     
-    @Autowired
-    private OrderItemRepository orderItemRepository;
-    
     @Autowired
     private ProductRepository productRepository;
     
@@ -35,14 +37,28 @@ public class OrderService {
     private UserRepository userRepository;
     
     @Autowired
-    private StockRepository stockRepository;
+    private StockLedger stockLedger;
+    
+    @Autowired
+    private StockReservationService stockReservationService;
     
     @Autowired
-    private ObjectMapper objectMapper;
+    private ApplicationEventPublisher eventPublisher;
     
     @Transactional
     public OrderDTO createOrder(OrderDTO orderDTO) {
+        // Set user from authentication
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String username = authentication != null && authentication.isAuthenticated() ? authentication.getName() : null;
+        return createOrder(orderDTO, username, null);
+    }
+    
+    // For callers without a security context (the async intake workers), which pass the submitting user
+    // and the intake reference the order is recorded under
+    @Transactional
+    public OrderDTO createOrder(OrderDTO orderDTO, String username, String intakeReference) {
         Order order = new Order();
+        order.setIntakeReference(intakeReference);
         
         // Set customer if provided
         if (orderDTO.getCustomerId() != null) {
@@ -51,10 +67,7 @@ public class OrderService {
             order.setCustomer(customer);
         }
         
-        // Set user from authentication
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated()) {
-            String username = authentication.getName();
+        if (username != null) {
             User user = userRepository.findByUsername(username)
                     .orElseThrow(() -> new RuntimeException("User not found"));
             order.setUser(user);
@@ -64,45 +77,52 @@ public class OrderService {
         order.setStatus(Order.OrderStatus.PENDING);
         order.setOrderDate(LocalDateTime.now());
         
-        // Store payment data as JSON string
+        // Store payment data as the JSON text it arrived as
         if (orderDTO.getPaymentData() != null) {
-            try {
-                order.setPaymentData(objectMapper.writeValueAsString(orderDTO.getPaymentData()));
-            } catch (Exception e) {
-                throw new RuntimeException("Error serializing payment data", e);
-            }
+            order.setPaymentData(orderDTO.getPaymentData().json());
         }
         
-        Order savedOrder = orderRepository.save(order);
+        // Resolve every product in one query and hold stock for the whole order before writing anything
+        Map<Long, BigDecimal> orderedQuantities = new TreeMap<>();
+        for (OrderItemDTO itemDTO : orderDTO.getItems()) {
+            orderedQuantities.merge(itemDTO.getProductId(), itemDTO.getQuantity(), BigDecimal::add);
+        }
+        Map<Long, Product> products = productRepository.findAllById(orderedQuantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (Long productId : orderedQuantities.keySet()) {
+            if (!products.containsKey(productId)) {
+                throw new RuntimeException("Product not found: " + productId);
+            }
+        }
+        long holdId = stockReservationService.reserveForTransaction(orderedQuantities);
         
-        // Create order items
+        // Items cascade from the order; with table-generated ids the inserts go out as one JDBC batch
         for (OrderItemDTO itemDTO : orderDTO.getItems()) {
             OrderItem item = new OrderItem();
-            item.setOrder(savedOrder);
-            
-            Product product = productRepository.findById(itemDTO.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Product not found: " + itemDTO.getProductId()));
-            item.setProduct(product);
+            item.setOrder(order);
+            item.setProduct(products.get(itemDTO.getProductId()));
             
             item.setQuantity(itemDTO.getQuantity());
             item.setPrice(itemDTO.getPrice());
             item.setSubtotal(itemDTO.getPrice().multiply(itemDTO.getQuantity()));
             
-            orderItemRepository.save(item);
-            
-            // Update stock
-            Stock stock = stockRepository.findByProductId(product.getId()).orElse(new Stock());
-            if (stock.getProduct() == null) {
-                stock.setProduct(product);
-            }
-            BigDecimal newQuantity = stock.getQuantity().subtract(itemDTO.getQuantity());
-            if (newQuantity.compareTo(BigDecimal.ZERO) < 0) {
-                newQuantity = BigDecimal.ZERO;
+            order.getItems().add(item);
+        }
+        
+        Order savedOrder = orderRepository.save(order);
+        
+        // One conditional decrement per product, in product id order so concurrent orders lock stock
+        // in the same sequence; a shortfall rolls back the whole order
+        for (Map.Entry<Long, BigDecimal> ordered : orderedQuantities.entrySet()) {
+            if (!stockLedger.tryDecrement(ordered.getKey(), ordered.getValue(),
+                    StockMovement.Reason.ORDER, savedOrder.getId())) {
+                throw new RuntimeException("Insufficient stock for product: " + products.get(ordered.getKey()).getName());
             }
-            stock.setQuantity(newQuantity);
-            stockRepository.save(stock);
+            stockReservationService.decremented(holdId, ordered.getKey(), ordered.getValue());
         }
         
+        eventPublisher.publishEvent(CatalogChangedEvent.pricesUnchanged(orderedQuantities.keySet()));
+        
         return convertToDTO(savedOrder);
     }
     
@@ -155,15 +175,8 @@ public class OrderService {
                 .collect(Collectors.toList());
         dto.setItems(items);
         
-        // Parse payment data from JSON
-        if (order.getPaymentData() != null) {
-            try {
-                dto.setPaymentData(objectMapper.readValue(order.getPaymentData(), Object.class));
-            } catch (Exception e) {
-                // If parsing fails, set as null
-                dto.setPaymentData(null);
-            }
-        }
+        // The column is JSON-typed, so the stored text is valid JSON and goes out as is
+        dto.setPaymentData(RawJson.of(order.getPaymentData()));
         
         return dto;
     }
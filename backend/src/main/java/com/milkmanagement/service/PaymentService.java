@@ -5,11 +5,13 @@ import com.milkmanagement.entity.Customer;
 import com.milkmanagement.entity.Invoice;
 import com.milkmanagement.entity.Payment;
 import com.milkmanagement.entity.User;
+import com.milkmanagement.event.DashboardDataChangedEvent;
 import com.milkmanagement.repository.CustomerRepository;
 import com.milkmanagement.repository.InvoiceRepository;
 import com.milkmanagement.repository.PaymentRepository;
 import com.milkmanagement.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -35,6 +37,12 @@ public class PaymentService {
     @Autowired
     private InvoiceRepository invoiceRepository;
     
+    @Autowired
+    private DailySalesSummaryService dailySalesSummaryService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @Transactional(readOnly = true)
     public List<PaymentDTO> getAllPayments() {
         return paymentRepository.findAll().stream()
@@ -81,6 +89,8 @@ public class PaymentService {
         }
         
         Payment savedPayment = paymentRepository.save(payment);
+        dailySalesSummaryService.recordPayment(savedPayment.getPaymentDate(), customer.getId(), savedPayment.getAmount());
+        eventPublisher.publishEvent(DashboardDataChangedEvent.payment(savedPayment.getAmount(), savedPayment.getPaymentDate()));
         
         // Update invoice if invoiceId is provided
         if (paymentDTO.getInvoiceId() != null) {
@@ -95,6 +105,9 @@ public class PaymentService {
         Payment payment = paymentRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Payment not found with id: " + id));
         
+        LocalDate previousDate = payment.getPaymentDate();
+        BigDecimal previousAmount = payment.getAmount();
+        
         if (paymentDTO.getAmount() != null) {
             payment.setAmount(paymentDTO.getAmount());
         }
@@ -113,6 +126,15 @@ public class PaymentService {
         
         Payment savedPayment = paymentRepository.save(payment);
         
+        if (!previousDate.equals(savedPayment.getPaymentDate())
+                || previousAmount.compareTo(savedPayment.getAmount()) != 0) {
+            Long customerId = savedPayment.getCustomer().getId();
+            dailySalesSummaryService.reversePayment(previousDate, customerId, previousAmount);
+            dailySalesSummaryService.recordPayment(savedPayment.getPaymentDate(), customerId, savedPayment.getAmount());
+            eventPublisher.publishEvent(DashboardDataChangedEvent.payment(
+                    savedPayment.getAmount().subtract(previousAmount), previousDate, savedPayment.getPaymentDate()));
+        }
+        
         // Update invoice status if status is provided
         if (paymentDTO.getStatus() != null) {
             if (paymentDTO.getInvoiceId() != null) {
@@ -128,10 +150,11 @@ public class PaymentService {
     
     @Transactional
     public void deletePayment(Long id) {
-        if (!paymentRepository.existsById(id)) {
-            throw new RuntimeException("Payment not found with id: " + id);
-        }
-        paymentRepository.deleteById(id);
+        Payment payment = paymentRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Payment not found with id: " + id));
+        dailySalesSummaryService.reversePayment(payment.getPaymentDate(), payment.getCustomer().getId(), payment.getAmount());
+        paymentRepository.delete(payment);
+        eventPublisher.publishEvent(DashboardDataChangedEvent.payment(payment.getAmount().negate(), payment.getPaymentDate()));
     }
     
     private void updateInvoiceWithPayment(Long invoiceId, Payment payment) {
@@ -1,16 +1,33 @@
 package com.milkmanagement.service;
 
+import com.milkmanagement.cache.ProductCatalog;
+import com.milkmanagement.cache.ResourceVersions;
+import com.milkmanagement.dto.DeliveryTotalsDTO;
 import com.milkmanagement.dto.ProductDTO;
 import com.milkmanagement.dto.ProductQuantityDTO;
+import com.milkmanagement.dto.ProductTypeQuantityDTO;
 import com.milkmanagement.entity.Product;
 import com.milkmanagement.entity.ProductPrice;
-import com.milkmanagement.entity.Stock;
+import com.milkmanagement.entity.StockMovement;
 import com.milkmanagement.entity.User;
+import com.milkmanagement.event.CatalogChangedEvent;
+import com.milkmanagement.event.DashboardDataChangedEvent;
+import com.milkmanagement.repository.MilkDeliveryRepository;
 import com.milkmanagement.repository.ProductPriceRepository;
 import com.milkmanagement.repository.ProductRepository;
+import com.milkmanagement.repository.ProductSpecifications;
 import com.milkmanagement.repository.StockRepository;
 import com.milkmanagement.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -18,12 +35,16 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
     
+    private static final Logger logger = LoggerFactory.getLogger(ProductService.class);
+    
     @Autowired
     private ProductRepository productRepository;
     
@@ -33,68 +54,64 @@ public class ProductService {
     @Autowired
     private StockRepository stockRepository;
     
+    @Autowired
+    private StockLedger stockLedger;
+    
     @Autowired
     private UserRepository userRepository;
     
-    @Transactional(readOnly = true)
+    @Autowired
+    private ProductCatalog productCatalog;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private MilkDeliveryRepository milkDeliveryRepository;
+    
+    @Autowired
+    private DailySalesSummaryService dailySalesSummaryService;
+    
+    @Autowired
+    private ResourceVersions resourceVersions;
+    
+    // Catalog reads are served from the in-memory snapshot and do not open a transaction
     public List<ProductDTO> getAllProducts() {
-        return productRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return productCatalog.snapshot().products();
     }
     
-    @Transactional(readOnly = true)
     public List<ProductDTO> searchProducts(String searchTerm) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return getAllProducts();
         }
         
-        String lowerSearchTerm = searchTerm.toLowerCase();
-        return productRepository.findAll().stream()
-                .filter(product -> 
-                    product.getName().toLowerCase().contains(lowerSearchTerm) ||
-                    (product.getDescription() != null && product.getDescription().toLowerCase().contains(lowerSearchTerm))
-                )
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return productCatalog.snapshot().search(searchTerm);
     }
     
+    // Filters run in SQL against the database, not the snapshot, so the result pages over committed data
     @Transactional(readOnly = true)
-    public List<ProductDTO> filterProducts(String name, BigDecimal minPrice, BigDecimal maxPrice, String type) {
-        return productRepository.findAll().stream()
-                .filter(product -> {
-                    boolean matches = true;
-                    
-                    if (name != null && !name.trim().isEmpty()) {
-                        matches = matches && product.getName().toLowerCase().contains(name.toLowerCase());
-                    }
-                    
-                    if (type != null && !type.trim().isEmpty()) {
-                        // Type matching logic - you may need to adjust based on your type field
-                        matches = matches && product.getName().toUpperCase().contains(type.toUpperCase());
-                    }
-                    
-                    return matches;
-                })
-                .map(this::convertToDTO)
-                .filter(dto -> {
-                    boolean priceMatches = true;
-                    if (minPrice != null) {
-                        priceMatches = priceMatches && dto.getPricePerUnit().compareTo(minPrice) >= 0;
-                    }
-                    if (maxPrice != null) {
-                        priceMatches = priceMatches && dto.getPricePerUnit().compareTo(maxPrice) <= 0;
-                    }
-                    return priceMatches;
-                })
+    public Page<ProductDTO> filterProducts(String name, String category, BigDecimal minPrice, BigDecimal maxPrice,
+                                           String type, Pageable pageable) {
+        Specification<Product> filter = Specification.where(ProductSpecifications.nameContains(name))
+                .and(ProductSpecifications.categoryEquals(category))
+                .and(ProductSpecifications.hasType(type))
+                .and(ProductSpecifications.activePriceBetween(minPrice, maxPrice));
+        
+        Page<Product> page = productRepository.findAll(filter, pageable);
+        if (page.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, page.getTotalElements());
+        }
+        
+        List<Long> ids = page.getContent().stream()
+                .map(Product::getId)
                 .collect(Collectors.toList());
+        List<ProductDTO> products = firstRowPerProduct(productRepository.findCatalogEntries(ids));
+        return new PageImpl<>(products, pageable, page.getTotalElements());
     }
     
-    @Transactional(readOnly = true)
     public ProductDTO getProductById(Long id) {
-        Product product = productRepository.findById(id)
+        return productCatalog.snapshot().find(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
-        return convertToDTO(product);
     }
     
     @Transactional
@@ -110,14 +127,13 @@ public class ProductService {
         product.setCategory(productDTO.getCategory());
         product.setMinOrderQuantity(productDTO.getMinOrderQuantity());
         product.setImageUrl(productDTO.getImageUrl());
+        product.setType(parseType(productDTO.getType(), productDTO.getName()));
         
         Product savedProduct = productRepository.save(product);
         
         // Create stock entry
-        Stock stock = new Stock();
-        stock.setProduct(savedProduct);
-        stock.setQuantity(productDTO.getQuantity() != null ? productDTO.getQuantity() : BigDecimal.ZERO);
-        stockRepository.save(stock);
+        stockLedger.add(savedProduct, productDTO.getQuantity() != null ? productDTO.getQuantity() : BigDecimal.ZERO,
+                StockMovement.Reason.ADJUSTMENT, null);
         
         // Create product price
         ProductPrice productPrice = new ProductPrice();
@@ -135,7 +151,9 @@ public class ProductService {
         
         productPriceRepository.save(productPrice);
         
-        return convertToDTO(savedProduct);
+        eventPublisher.publishEvent(CatalogChangedEvent.product(savedProduct.getId()));
+        
+        return loadCatalogEntry(savedProduct.getId());
     }
     
     @Transactional
@@ -165,14 +183,14 @@ public class ProductService {
         if (productDTO.getImageUrl() != null) {
             product.setImageUrl(productDTO.getImageUrl());
         }
+        if (productDTO.getType() != null || product.getType() == null) {
+            product.setType(parseType(productDTO.getType(), productDTO.getName()));
+        }
         
         Product savedProduct = productRepository.save(product);
         
         // Update stock
-        Stock stock = stockRepository.findByProductId(id).orElse(new Stock());
-        stock.setProduct(savedProduct);
-        stock.setQuantity(productDTO.getQuantity() != null ? productDTO.getQuantity() : BigDecimal.ZERO);
-        stockRepository.save(stock);
+        stockLedger.setQuantity(savedProduct, productDTO.getQuantity() != null ? productDTO.getQuantity() : BigDecimal.ZERO);
         
         // Update or create new product price
         ProductPrice existingPrice = productPriceRepository.findLatestActivePrice(savedProduct).orElse(null);
@@ -215,7 +233,9 @@ public class ProductService {
             productPriceRepository.save(newPrice);
         }
         
-        return convertToDTO(savedProduct);
+        eventPublisher.publishEvent(CatalogChangedEvent.product(savedProduct.getId()));
+        
+        return loadCatalogEntry(savedProduct.getId());
     }
     
     @Transactional
@@ -223,32 +243,44 @@ public class ProductService {
         if (!productRepository.existsById(id)) {
             throw new RuntimeException("Product not found with id: " + id);
         }
+        
+        // The database cascades the delete to the product's deliveries, so their totals are read
+        // first and taken out of the rollup and the dashboard afterwards
+        List<LocalDate> deliveryDates = milkDeliveryRepository.findDeliveryDatesByProductId(id);
+        DeliveryTotalsDTO deliveries = milkDeliveryRepository.getDeliveryTotalsByProductId(id);
+        
         productRepository.deleteById(id);
+        productRepository.flush();
+        
+        if (!deliveryDates.isEmpty()) {
+            deliveryDates.forEach(dailySalesSummaryService::rebuildDeliveries);
+            eventPublisher.publishEvent(DashboardDataChangedEvent.deliveries(Set.copyOf(deliveryDates),
+                    deliveries.getTotalAmount().negate(), deliveries.getTotalQuantity().negate(),
+                    -deliveries.getDeliveryCount()));
+            resourceVersions.bump(ResourceVersions.Resource.DELIVERIES);
+        }
+        eventPublisher.publishEvent(CatalogChangedEvent.product(id));
     }
     
-    @Transactional(readOnly = true)
     public Long getProductCount() {
-        return productRepository.count();
+        return (long) getAllProducts().size();
     }
     
+    // One grouped aggregate over the indexed product_type column
     @Transactional(readOnly = true)
     public ProductQuantityDTO getProductQuantities() {
         ProductQuantityDTO quantities = new ProductQuantityDTO();
         
-        // Get quantities from products
-        List<ProductDTO> products = getAllProducts();
-        
         BigDecimal cowMilkQty = BigDecimal.ZERO;
         BigDecimal buffaloMilkQty = BigDecimal.ZERO;
         BigDecimal curdQty = BigDecimal.ZERO;
         
-        for (ProductDTO product : products) {
-            if ("COW_MILK".equals(product.getType())) {
-                cowMilkQty = cowMilkQty.add(product.getQuantity());
-            } else if ("BUFFALO_MILK".equals(product.getType())) {
-                buffaloMilkQty = buffaloMilkQty.add(product.getQuantity());
-            } else if ("CURD".equals(product.getType())) {
-                curdQty = curdQty.add(product.getQuantity());
+        for (ProductTypeQuantityDTO total : stockRepository.sumQuantityByProductType()) {
+            BigDecimal quantity = total.getQuantity() != null ? total.getQuantity() : BigDecimal.ZERO;
+            switch (total.getType()) {
+                case COW_MILK -> cowMilkQty = quantity;
+                case BUFFALO_MILK -> buffaloMilkQty = quantity;
+                case CURD -> curdQty = quantity;
             }
         }
         
@@ -272,57 +304,78 @@ public class ProductService {
     
     @Transactional
     public ProductQuantityDTO updateProductQuantity(String type, BigDecimal quantity) {
-        // Update stock quantities for products of the specified type
-        List<ProductDTO> products = getAllProducts();
+        Product.ProductType productType = parseType(type, null);
+        if (productType == null) {
+            throw new RuntimeException("Product type is required");
+        }
         
-        for (ProductDTO product : products) {
-            if (type.equals(product.getType())) {
-                // Update stock for this product
-                Stock stock = stockRepository.findByProductId(product.getId()).orElse(new Stock());
-                if (stock.getProduct() == null) {
-                    Product prod = productRepository.findById(product.getId()).orElse(null);
-                    if (prod != null) {
-                        stock.setProduct(prod);
-                    }
-                }
-                if (quantity != null) {
-                    stock.setQuantity(quantity);
-                    stockRepository.save(stock);
-                }
-            }
+        // One set-based update for every stock row of the type
+        List<Long> productIds = productRepository.findIdsByType(productType);
+        if (quantity != null && !productIds.isEmpty()) {
+            stockLedger.setQuantities(productIds, quantity);
+            eventPublisher.publishEvent(CatalogChangedEvent.pricesUnchanged(productIds));
         }
         
         return getProductQuantities();
     }
     
-    private ProductDTO convertToDTO(Product product) {
-        ProductDTO dto = new ProductDTO();
-        dto.setId(product.getId());
-        dto.setName(product.getName());
-        dto.setUnit(product.getUnit());
-        dto.setDescription(product.getDescription());
-        dto.setCategory(product.getCategory());
-        dto.setMinOrderQuantity(product.getMinOrderQuantity());
-        dto.setImageUrl(product.getImageUrl());
-        
-        // Get stock quantity
-        Stock stock = stockRepository.findByProductId(product.getId()).orElse(null);
-        dto.setQuantity(stock != null ? stock.getQuantity() : BigDecimal.ZERO);
-        
-        // Get current price
-        ProductPrice price = productPriceRepository.findLatestActivePrice(product).orElse(null);
-        dto.setPricePerUnit(price != null ? price.getPricePerUnit() : BigDecimal.ZERO);
-        
-        // Determine type from name (you can adjust this logic)
-        String nameUpper = product.getName().toUpperCase();
+    // Assigns a type to products saved before the product_type column existed
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillProductTypes() {
+        List<Long> updatedIds = new ArrayList<>();
+        for (Product product : productRepository.findByTypeIsNull()) {
+            Product.ProductType type = typeFromName(product.getName());
+            if (type != null) {
+                product.setType(type);
+                updatedIds.add(product.getId());
+            }
+        }
+        if (!updatedIds.isEmpty()) {
+            logger.info("Assigned product type to {} products", updatedIds.size());
+            eventPublisher.publishEvent(CatalogChangedEvent.pricesUnchanged(updatedIds));
+        }
+    }
+    
+    // Sees this transaction's own writes; the catalog snapshot only catches up after commit
+    private ProductDTO loadCatalogEntry(Long id) {
+        return productRepository.findCatalogEntry(id).stream()
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+    }
+    
+    // Catalog rows come ordered by product id with the newest price first
+    private List<ProductDTO> firstRowPerProduct(List<ProductDTO> rows) {
+        List<ProductDTO> products = new ArrayList<>();
+        for (ProductDTO row : rows) {
+            if (products.isEmpty() || !products.get(products.size() - 1).getId().equals(row.getId())) {
+                products.add(row);
+            }
+        }
+        return products;
+    }
+    
+    // An explicit type code wins; otherwise the type is derived from the name
+    private Product.ProductType parseType(String type, String name) {
+        if (type != null && !type.trim().isEmpty()) {
+            try {
+                return Product.ProductType.valueOf(type.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Invalid product type: " + type);
+            }
+        }
+        return name != null ? typeFromName(name) : null;
+    }
+    
+    private Product.ProductType typeFromName(String name) {
+        String nameUpper = name.toUpperCase();
         if (nameUpper.contains("COW")) {
-            dto.setType("COW_MILK");
+            return Product.ProductType.COW_MILK;
         } else if (nameUpper.contains("BUFFALO")) {
-            dto.setType("BUFFALO_MILK");
+            return Product.ProductType.BUFFALO_MILK;
         } else if (nameUpper.contains("CURD")) {
-            dto.setType("CURD");
+            return Product.ProductType.CURD;
         }
-        
-        return dto;
+        return null;
     }
 }
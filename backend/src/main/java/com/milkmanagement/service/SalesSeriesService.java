@@ -0,0 +1,117 @@
+package com.milkmanagement.service;
+
+import com.milkmanagement.dto.SalesSeriesDTO;
+import com.milkmanagement.dto.SalesSeriesPointDTO;
+import com.milkmanagement.entity.DailySalesSummary;
+import com.milkmanagement.entity.Product;
+import com.milkmanagement.repository.DailySalesSummaryRepository;
+import com.milkmanagement.repository.ProductRepository;
+import com.milkmanagement.util.TimeGranularity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Builds revenue / volume / payment series from the daily_sales_summary rollup.
+ * All buckets of a range come from one read of at most (days x products) rollup rows.
+ */
+@Service
+public class SalesSeriesService {
+    
+    public enum GroupBy {
+        NONE, PRODUCT, MILK_TYPE
+    }
+    
+    private static final int DEFAULT_RANGE_DAYS = 30;
+    
+    @Autowired
+    private DailySalesSummaryRepository dailySalesSummaryRepository;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Transactional(readOnly = true)
+    public SalesSeriesDTO getSeries(LocalDate fromDate, LocalDate toDate, TimeGranularity granularity, GroupBy groupBy) {
+        LocalDate to = toDate != null ? toDate : LocalDate.now();
+        LocalDate from = fromDate != null ? fromDate : to.minusDays(DEFAULT_RANGE_DAYS - 1);
+        if (from.isAfter(to)) {
+            throw new RuntimeException("fromDate must not be after toDate");
+        }
+        
+        List<DailySalesSummary> rows = dailySalesSummaryRepository
+                .findByCustomerIdAndSummaryDateBetween(DailySalesSummary.ALL, from, to);
+        
+        Function<Long, String> keyOf = keyResolver(groupBy);
+        
+        // bucket start -> series key -> point
+        Map<LocalDate, Map<String, SalesSeriesPointDTO>> buckets = new TreeMap<>();
+        for (DailySalesSummary row : rows) {
+            LocalDate bucketStart = granularity.bucketStart(row.getSummaryDate());
+            boolean paymentRow = DailySalesSummary.ALL.equals(row.getProductId());
+            if (paymentRow && groupBy != GroupBy.NONE) {
+                continue;
+            }
+            String key = paymentRow ? null : keyOf.apply(row.getProductId());
+            
+            SalesSeriesPointDTO point = buckets
+                    .computeIfAbsent(bucketStart, start -> new HashMap<>())
+                    .computeIfAbsent(key, k -> newPoint(granularity, bucketStart, k, groupBy));
+            point.setRevenue(point.getRevenue().add(row.getDeliveredAmount()));
+            point.setQuantity(point.getQuantity().add(row.getDeliveredQuantity()));
+            point.setDeliveryCount(point.getDeliveryCount() + row.getDeliveryCount());
+            if (point.getPayments() != null) {
+                point.setPayments(point.getPayments().add(row.getPaymentAmount()));
+            }
+        }
+        
+        List<SalesSeriesPointDTO> points = new ArrayList<>();
+        for (Map<String, SalesSeriesPointDTO> bucket : buckets.values()) {
+            bucket.values().stream()
+                    .sorted(Comparator.comparing(SalesSeriesPointDTO::getKey, Comparator.nullsFirst(Comparator.<String>naturalOrder())))
+                    .forEach(points::add);
+        }
+        
+        return new SalesSeriesDTO(from, to, granularity.name(), groupBy.name(), points);
+    }
+    
+    private Function<Long, String> keyResolver(GroupBy groupBy) {
+        if (groupBy == GroupBy.NONE) {
+            return productId -> null;
+        }
+        Map<Long, Product> products = productRepository.findAll().stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return productId -> {
+            Product product = products.get(productId);
+            if (product == null) {
+                return "UNKNOWN";
+            }
+            if (groupBy == GroupBy.PRODUCT) {
+                return product.getName();
+            }
+            return product.getType() != null ? product.getType().name() : "OTHER";
+        };
+    }
+    
+    private SalesSeriesPointDTO newPoint(TimeGranularity granularity, LocalDate bucketStart, String key, GroupBy groupBy) {
+        return new SalesSeriesPointDTO(
+                bucketStart,
+                granularity.bucketEnd(bucketStart),
+                key,
+                BigDecimal.ZERO,
+                BigDecimal.ZERO,
+                0L,
+                groupBy == GroupBy.NONE ? BigDecimal.ZERO : null
+        );
+    }
+}
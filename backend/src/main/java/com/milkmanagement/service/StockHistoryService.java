@@ -0,0 +1,184 @@
+package com.milkmanagement.service;
+
+import com.milkmanagement.dto.StockLevelDTO;
+import com.milkmanagement.entity.Stock;
+import com.milkmanagement.entity.StockMovement;
+import com.milkmanagement.entity.StockSnapshot;
+import com.milkmanagement.repository.ProductRepository;
+import com.milkmanagement.repository.StockMovementRepository;
+import com.milkmanagement.repository.StockRepository;
+import com.milkmanagement.repository.StockSnapshotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only stock history. Every stock change is recorded as a
+ * StockMovement by the stock ledger, and each product gets a StockSnapshot
+ * daily and after every stock.snapshot.every-movements movements. The quantity
+ * at a point in time is the latest snapshot before it plus the movements
+ * recorded after that snapshot, so a lookup never reads more than one
+ * snapshot interval of movements.
+ *
+ * Movements are recorded while the product's stock row is locked, and a
+ * snapshot locks the row before reading it, so a snapshot never misses a
+ * movement that commits later with a lower id.
+ */
+@Service
+public class StockHistoryService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StockHistoryService.class);
+    
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+    
+    @Autowired
+    private StockSnapshotRepository stockSnapshotRepository;
+    
+    @Autowired
+    private StockRepository stockRepository;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Value("${stock.snapshot.every-movements:1000}")
+    private int snapshotEveryMovements;
+    
+    private final TransactionTemplate snapshotTransaction;
+    
+    // Movements per product since its last snapshot; reset on restart, the daily snapshot bounds it anyway
+    private final Map<Long, AtomicInteger> movementsSinceSnapshot = new ConcurrentHashMap<>();
+    
+    public StockHistoryService(PlatformTransactionManager transactionManager) {
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+    
+    // Callers hold the product's stock row lock (or have just inserted the row)
+    public void record(Long productId, BigDecimal delta, StockMovement.Reason reason, Long referenceId) {
+        recordAll(List.of(new StockMovement(productId, delta, reason, referenceId, LocalDateTime.now())));
+    }
+    
+    public void recordAll(List<StockMovement> movements) {
+        List<StockMovement> changes = movements.stream()
+                .filter(movement -> movement.getQuantityDelta().signum() != 0)
+                .toList();
+        if (changes.isEmpty()) {
+            return;
+        }
+        stockMovementRepository.saveAll(changes);
+        
+        for (StockMovement movement : changes) {
+            int count = movementsSinceSnapshot
+                    .computeIfAbsent(movement.getProductId(), id -> new AtomicInteger())
+                    .incrementAndGet();
+            if (count % snapshotEveryMovements == 0) {
+                snapshotAfterCommit(movement.getProductId());
+            }
+        }
+    }
+    
+    @Transactional(readOnly = true)
+    public StockLevelDTO getStockAt(Long productId, LocalDateTime at) {
+        if (!productRepository.existsById(productId)) {
+            throw new RuntimeException("Product not found with id: " + productId);
+        }
+        
+        StockSnapshot snapshot = stockSnapshotRepository
+                .findFirstByProductIdAndTakenAtLessThanEqualOrderByTakenAtDescIdDesc(productId, at)
+                .orElse(null);
+        
+        BigDecimal quantity;
+        LocalDateTime snapshotAt = null;
+        if (snapshot != null) {
+            quantity = snapshot.getQuantity()
+                    .add(stockMovementRepository.sumDeltaAfter(productId, snapshot.getLastMovementId(), at));
+            snapshotAt = snapshot.getTakenAt();
+        } else {
+            // Before the product's first snapshot. An opening snapshot taken before any movement
+            // means the product had stock before tracking began; otherwise it started at zero
+            StockSnapshot first = stockSnapshotRepository.findFirstByProductIdOrderByTakenAtAscIdAsc(productId)
+                    .orElse(null);
+            if (first != null && first.getLastMovementId() == 0 && first.getQuantity().signum() != 0) {
+                throw new RuntimeException("Stock history for product with id: " + productId
+                        + " starts at " + first.getTakenAt());
+            }
+            quantity = stockMovementRepository.sumDeltaUntil(productId, at);
+        }
+        
+        return new StockLevelDTO(productId, at, quantity, snapshotAt);
+    }
+    
+    // Daily snapshot of every product; one short transaction each so row locks are held briefly
+    @Scheduled(cron = "${stock.snapshot.cron:0 5 0 * * *}")
+    public void snapshotAll() {
+        List<Long> productIds = productRepository.findAllIds();
+        for (Long productId : productIds) {
+            snapshot(productId);
+        }
+        logger.info("Took stock snapshots for {} products", productIds.size());
+    }
+    
+    // Opening balance for products that existed before movements were recorded
+    @EventListener(ApplicationReadyEvent.class)
+    public void snapshotUntrackedProducts() {
+        int taken = 0;
+        for (Long productId : productRepository.findAllIds()) {
+            if (!stockSnapshotRepository.existsByProductId(productId)) {
+                snapshot(productId);
+                taken++;
+            }
+        }
+        if (taken > 0) {
+            logger.info("Took opening stock snapshots for {} products", taken);
+        }
+    }
+    
+    public void snapshot(Long productId) {
+        try {
+            snapshotTransaction.executeWithoutResult(status -> {
+                // Locking first means every movement of the product up to the latest id has committed
+                BigDecimal quantity = stockRepository.findByProductIdForUpdate(productId)
+                        .map(Stock::getQuantity)
+                        .orElse(BigDecimal.ZERO);
+                Long lastMovementId = stockMovementRepository.findLastIdByProductId(productId);
+                stockSnapshotRepository.save(
+                        new StockSnapshot(null, productId, quantity, lastMovementId, LocalDateTime.now()));
+            });
+            movementsSinceSnapshot.remove(productId);
+        } catch (RuntimeException e) {
+            logger.warn("Could not take stock snapshot for product {}", productId, e);
+        }
+    }
+    
+    private void snapshotAfterCommit(Long productId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            snapshot(productId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                snapshot(productId);
+            }
+        });
+    }
+}
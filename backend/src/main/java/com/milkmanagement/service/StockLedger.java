@@ -0,0 +1,47 @@
+package com.milkmanagement.service;
+
+import com.milkmanagement.entity.Product;
+import com.milkmanagement.entity.StockMovement;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Single entry point for stock quantity changes. Every change is also
+ * recorded as a stock movement, see StockHistoryService.
+ *
+ * The default engine (stock.engine=database) applies every change as one
+ * conditional UPDATE on the stock row. stock.engine=memory keeps quantities in
+ * memory and writes them back to the stock table in batches, see
+ * InMemoryStockLedger.
+ *
+ * Changes made inside a transaction take effect with it and are undone if it
+ * rolls back.
+ */
+public interface StockLedger {
+    
+    BigDecimal available(Long productId);
+    
+    // Products without stock are mapped to zero
+    Map<Long, BigDecimal> available(Collection<Long> productIds);
+    
+    // Adds a possibly negative delta, creating the stock row on first use
+    void add(Product product, BigDecimal delta, StockMovement.Reason reason, Long referenceId);
+    
+    // Adds the deltas as one stock change, recording one movement per delta with its key as the reference id
+    void addAll(Product product, Map<Long, BigDecimal> deltasByReference, StockMovement.Reason reason);
+    
+    // Subtracts only if enough stock is left; returns false and changes nothing otherwise
+    boolean tryDecrement(Long productId, BigDecimal quantity, StockMovement.Reason reason, Long referenceId);
+    
+    void decrementClampedAtZero(Long productId, BigDecimal quantity, StockMovement.Reason reason, Long referenceId);
+    
+    // Overwrites the quantity, creating the stock row on first use; recorded as an adjustment
+    void setQuantity(Product product, BigDecimal quantity);
+    
+    void setQuantities(Collection<Long> productIds, BigDecimal quantity);
+    
+    // Whether available() already reflects decrements of transactions that have not committed yet
+    boolean decrementsVisibleBeforeCommit();
+}
@@ -0,0 +1,211 @@
+package com.milkmanagement.service;
+
+import com.milkmanagement.cache.ProductCatalog;
+import com.milkmanagement.dto.ProductDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Short-lived, in-memory holds on stock taken by checkouts before they write
+ * anything. A hold covers every item of an order or none of them; while it is
+ * held, other checkouts see that stock as gone and fail fast instead of
+ * queueing on the stock row locks only to roll back.
+ *
+ * A hold ends with the transaction that took it: on commit the ledger has
+ * already decremented the stock, on rollback nothing was taken, so in both
+ * cases the hold is simply dropped. With a ledger whose decrements are
+ * visible before commit (stock.engine=memory) each product's share of the
+ * hold is dropped as soon as the ledger has taken it, so later checkouts,
+ * including the next order of the same intake batch, do not count it twice. Holds whose transaction never completes
+ * (stuck or killed threads) expire after stock.reservation.ttl-ms and are
+ * released by a sweeper. The ledger's conditional decrement stays the final
+ * guard, so an expired hold can cost throughput but never oversell.
+ *
+ * Checks and holds take a lock striped by product id; an order locks its
+ * stripes in index order, so orders sharing products never deadlock. Stock
+ * is read before the stripes are locked, so no database query runs under
+ * them; a hold released in between can at worst let a checkout through to
+ * the ledger's decrement, which then rejects it.
+ */
+@Service
+public class StockReservationService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationService.class);
+    
+    private static final int STRIPES = 64;
+    
+    @Autowired
+    private StockLedger stockLedger;
+    
+    @Autowired
+    private ProductCatalog productCatalog;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${stock.reservation.ttl-ms:30000}")
+    private long ttlMs;
+    
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Map<Long, BigDecimal> reserved = new ConcurrentHashMap<>();
+    private final Map<Long, Hold> holds = new ConcurrentHashMap<>();
+    private final AtomicLong holdIds = new AtomicLong();
+    
+    private Counter rejected;
+    private Counter expired;
+    
+    public StockReservationService() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+    
+    @PostConstruct
+    public void registerMetrics() {
+        rejected = Counter.builder("stock.reservations.rejected").register(meterRegistry);
+        expired = Counter.builder("stock.reservations.expired").register(meterRegistry);
+        Gauge.builder("stock.reservations.active", holds, Map::size).register(meterRegistry);
+    }
+    
+    /**
+     * Holds the given quantity of every product, or throws without holding
+     * anything. The hold is released when the current transaction completes;
+     * the returned id is passed to decremented().
+     */
+    public long reserveForTransaction(Map<Long, BigDecimal> quantities) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Stock reservations require an active transaction");
+        }
+        Hold hold = reserve(quantities);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                release(hold.id());
+            }
+        });
+        return hold.id();
+    }
+    
+    // Reports that the ledger has taken the quantity of a held product within the hold's transaction
+    public void decremented(long holdId, Long productId, BigDecimal quantity) {
+        if (!stockLedger.decrementsVisibleBeforeCommit()) {
+            return;
+        }
+        ReentrantLock stripe = stripes[stripeIndex(productId)];
+        stripe.lock();
+        try {
+            // release() removes the hold before taking stripe locks, so a hold still present here is not released yet
+            Hold hold = holds.get(holdId);
+            BigDecimal held = hold != null ? hold.quantities().get(productId) : null;
+            if (held == null) {
+                return;
+            }
+            BigDecimal taken = held.min(quantity);
+            BigDecimal remaining = held.subtract(taken);
+            if (remaining.signum() > 0) {
+                hold.quantities().put(productId, remaining);
+            } else {
+                hold.quantities().remove(productId);
+            }
+            unreserve(productId, taken);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    // Drops holds older than the TTL; their transactions are presumed dead
+    @Scheduled(fixedDelayString = "${stock.reservation.sweep-interval-ms:5000}")
+    public void releaseExpired() {
+        long now = System.currentTimeMillis();
+        for (Hold hold : holds.values()) {
+            if (hold.expiresAt() <= now && release(hold.id())) {
+                expired.increment();
+                logger.warn("Released expired stock reservation {} for products {}", hold.id(), hold.quantities().keySet());
+            }
+        }
+    }
+    
+    private Hold reserve(Map<Long, BigDecimal> quantities) {
+        SortedSet<Integer> stripeIndexes = new TreeSet<>();
+        quantities.keySet().forEach(productId -> stripeIndexes.add(stripeIndex(productId)));
+        
+        Map<Long, BigDecimal> available = stockLedger.available(quantities.keySet());
+        stripeIndexes.forEach(index -> stripes[index].lock());
+        try {
+            for (Map.Entry<Long, BigDecimal> requested : quantities.entrySet()) {
+                BigDecimal free = available.get(requested.getKey())
+                        .subtract(reserved.getOrDefault(requested.getKey(), BigDecimal.ZERO));
+                if (free.compareTo(requested.getValue()) < 0) {
+                    rejected.increment();
+                    throw new RuntimeException("Insufficient stock for product: " + productName(requested.getKey()));
+                }
+            }
+            for (Map.Entry<Long, BigDecimal> requested : quantities.entrySet()) {
+                reserved.merge(requested.getKey(), requested.getValue(), BigDecimal::add);
+            }
+        } finally {
+            stripeIndexes.forEach(index -> stripes[index].unlock());
+        }
+        
+        Hold hold = new Hold(holdIds.incrementAndGet(), new ConcurrentHashMap<>(quantities), System.currentTimeMillis() + ttlMs);
+        holds.put(hold.id(), hold);
+        return hold;
+    }
+    
+    // Returns false when the hold was already released, by its transaction or by the sweeper
+    private boolean release(long holdId) {
+        Hold hold = holds.remove(holdId);
+        if (hold == null) {
+            return false;
+        }
+        for (Map.Entry<Long, BigDecimal> held : hold.quantities().entrySet()) {
+            ReentrantLock stripe = stripes[stripeIndex(held.getKey())];
+            stripe.lock();
+            try {
+                unreserve(held.getKey(), held.getValue());
+            } finally {
+                stripe.unlock();
+            }
+        }
+        return true;
+    }
+    
+    // Caller holds the product's stripe lock
+    private void unreserve(Long productId, BigDecimal quantity) {
+        reserved.computeIfPresent(productId, (id, total) -> {
+            BigDecimal remaining = total.subtract(quantity);
+            return remaining.signum() > 0 ? remaining : null;
+        });
+    }
+    
+    private String productName(Long productId) {
+        return productCatalog.snapshot().find(productId)
+                .map(ProductDTO::getName)
+                .orElse(String.valueOf(productId));
+    }
+    
+    private int stripeIndex(Long productId) {
+        return Math.floorMod(productId.hashCode(), STRIPES);
+    }
+    
+    private record Hold(long id, Map<Long, BigDecimal> quantities, long expiresAt) {
+    }
+}
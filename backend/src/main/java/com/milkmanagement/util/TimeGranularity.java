@@ -0,0 +1,32 @@
+package com.milkmanagement.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Calendar buckets used by the time-series reports. Weeks start on Monday.
+ */
+public enum TimeGranularity {
+    DAY, WEEK, MONTH;
+    
+    public LocalDate bucketStart(LocalDate date) {
+        return switch (this) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+    
+    public LocalDate bucketEnd(LocalDate bucketStart) {
+        return switch (this) {
+            case DAY -> bucketStart;
+            case WEEK -> bucketStart.plusDays(6);
+            case MONTH -> bucketStart.with(TemporalAdjusters.lastDayOfMonth());
+        };
+    }
+    
+    public static TimeGranularity from(String value) {
+        return value == null || value.isBlank() ? DAY : valueOf(value.trim().toUpperCase());
+    }
+}
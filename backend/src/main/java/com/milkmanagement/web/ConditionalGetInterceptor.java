@@ -0,0 +1,73 @@
+package com.milkmanagement.web;
+
+import com.milkmanagement.cache.ResourceVersions;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.LocalDate;
+import java.util.Enumeration;
+
+/**
+ * Handles If-None-Match for handlers annotated with @VersionedResource before
+ * the controller runs, so a current tag costs no service call or query.
+ * Otherwise the tag is left for VersionedResourceHeaders, which sends it with
+ * 2xx responses only.
+ */
+@Component
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+    
+    static final String ETAG_ATTRIBUTE = ConditionalGetInterceptor.class.getName() + ".eTag";
+    
+    @Autowired
+    private ResourceVersions resourceVersions;
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        VersionedResource versioned = handlerMethod.getMethodAnnotation(VersionedResource.class);
+        if (versioned == null) {
+            return true;
+        }
+        
+        // Read before the handler loads data, so the tag is never newer than the body it goes out with
+        String eTag = versioned.dated()
+                ? resourceVersions.eTag(LocalDate.now(), versioned.value())
+                : resourceVersions.eTag(versioned.value());
+        
+        if (!matchesIfNoneMatch(request, eTag)) {
+            // The handler may still fail; VersionedResourceHeaders adds the tag only to a successful body
+            request.setAttribute(ETAG_ATTRIBUTE, eTag);
+            return true;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, VersionedResourceHeaders.CACHE_CONTROL);
+        return !new ServletWebRequest(request, response).checkNotModified(eTag);
+    }
+    
+    // Weak comparison, as for If-None-Match on GET
+    private static boolean matchesIfNoneMatch(HttpServletRequest request, String eTag) {
+        Enumeration<String> headers = request.getHeaders(HttpHeaders.IF_NONE_MATCH);
+        while (headers.hasMoreElements()) {
+            for (String candidate : headers.nextElement().split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(eTag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
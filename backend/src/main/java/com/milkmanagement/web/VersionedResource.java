@@ -0,0 +1,23 @@
+package com.milkmanagement.web;
+
+import com.milkmanagement.cache.ResourceVersions;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a GET handler whose response depends only on the listed resource
+ * collections. ConditionalGetInterceptor answers it with an ETag built from
+ * their versions and short-circuits with 304 when the client's tag is current.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VersionedResource {
+    
+    ResourceVersions.Resource[] value();
+    
+    // The response also depends on today's date (dates stamped with today, ranges ending today by default)
+    boolean dated() default false;
+}
@@ -0,0 +1,46 @@
+package com.milkmanagement.web;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds the ETag computed by ConditionalGetInterceptor to successful responses
+ * of @VersionedResource handlers, so an error body never carries a tag a
+ * client could later revalidate against.
+ */
+@ControllerAdvice
+public class VersionedResourceHeaders implements ResponseBodyAdvice<Object> {
+    
+    // Clients may keep the body but must revalidate; this also stops Spring Security writing no-store
+    static final String CACHE_CONTROL = "private, no-cache";
+    
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return returnType.hasMethodAnnotation(VersionedResource.class);
+    }
+    
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest)
+                || !(response instanceof ServletServerHttpResponse servletResponse)) {
+            return body;
+        }
+        Object eTag = servletRequest.getServletRequest().getAttribute(ConditionalGetInterceptor.ETAG_ATTRIBUTE);
+        int status = servletResponse.getServletResponse().getStatus();
+        if (eTag != null && status >= 200 && status < 300) {
+            response.getHeaders().set(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+            response.getHeaders().setETag(eTag.toString());
+        }
+        return body;
+    }
+}
@@ -0,0 +1,181 @@
+package com.milkmanagement.service;
+
+import com.milkmanagement.entity.Product;
+import com.milkmanagement.entity.Stock;
+import com.milkmanagement.entity.StockJournalCheckpoint;
+import com.milkmanagement.entity.StockMovement;
+import com.milkmanagement.repository.ProductRepository;
+import com.milkmanagement.repository.StockJournalCheckpointRepository;
+import com.milkmanagement.repository.StockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InMemoryStockLedgerTest {
+    
+    private static final Long PRODUCT_ID = 1L;
+    
+    @TempDir
+    Path tempDir;
+    
+    private Path journalPath;
+    private NoOpTransactionManager transactionManager;
+    private StockRepository stockRepository;
+    private StockJournalCheckpointRepository checkpointRepository;
+    private StockHistoryService stockHistoryService;
+    private Product product;
+    
+    @BeforeEach
+    void setUp() {
+        journalPath = tempDir.resolve("stock.journal");
+        transactionManager = new NoOpTransactionManager();
+        stockRepository = mock(StockRepository.class);
+        checkpointRepository = mock(StockJournalCheckpointRepository.class);
+        stockHistoryService = mock(StockHistoryService.class);
+        
+        product = new Product();
+        product.setId(PRODUCT_ID);
+        Stock stock = new Stock();
+        stock.setProduct(product);
+        stock.setQuantity(new BigDecimal("10"));
+        when(stockRepository.findAll()).thenReturn(List.of(stock));
+        when(stockRepository.adjustQuantity(eq(PRODUCT_ID), any(), any())).thenReturn(1);
+    }
+    
+    @Test
+    void replaysJournalEntriesAfterTheCheckpointOnStartup() throws Exception {
+        // Sequence 1 is already in the stock table; the last line was torn by the crash
+        Files.writeString(journalPath,
+                "1,1,3,RECEIPT,,2024-01-01T08:00\n" +
+                "2,1,5,RECEIPT,7,2024-01-01T08:01\n" +
+                "3,1,-2,ORDER,8,2024-01-01T08:02\n" +
+                "4,1,10", StandardCharsets.UTF_8);
+        when(checkpointRepository.findById(StockJournalCheckpoint.SINGLETON_ID))
+                .thenReturn(Optional.of(new StockJournalCheckpoint(StockJournalCheckpoint.SINGLETON_ID, 1L, null)));
+        
+        InMemoryStockLedger ledger = startLedger();
+        
+        assertThat(ledger.available(PRODUCT_ID)).isEqualByComparingTo("13");
+        
+        ledger.flush();
+        
+        verify(stockRepository).adjustQuantity(eq(PRODUCT_ID), eq(new BigDecimal("3")), any());
+        ArgumentCaptor<StockJournalCheckpoint> checkpoint = ArgumentCaptor.forClass(StockJournalCheckpoint.class);
+        verify(checkpointRepository).save(checkpoint.capture());
+        assertThat(checkpoint.getValue().getLastSequence()).isEqualTo(3L);
+        assertThat(Files.readString(journalPath)).isEmpty();
+    }
+    
+    @Test
+    void additionsBecomeVisibleOnlyAfterCommit() throws Exception {
+        InMemoryStockLedger ledger = startLedger();
+        
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertThat(ledger.tryDecrement(PRODUCT_ID, new BigDecimal("4"), StockMovement.Reason.ORDER, 1L)).isTrue();
+            ledger.add(product, new BigDecimal("6"), StockMovement.Reason.RECEIPT, 2L);
+            
+            assertThat(ledger.available(PRODUCT_ID)).isEqualByComparingTo("6");
+        });
+        
+        assertThat(ledger.available(PRODUCT_ID)).isEqualByComparingTo("12");
+        assertThat(Files.readAllLines(journalPath)).hasSize(2);
+    }
+    
+    @Test
+    void rollbackRestoresDecrementsAndDropsAdditions() throws Exception {
+        InMemoryStockLedger ledger = startLedger();
+        
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ledger.tryDecrement(PRODUCT_ID, new BigDecimal("4"), StockMovement.Reason.ORDER, 1L);
+            ledger.add(product, new BigDecimal("6"), StockMovement.Reason.RECEIPT, 2L);
+            status.setRollbackOnly();
+        });
+        
+        assertThat(ledger.available(PRODUCT_ID)).isEqualByComparingTo("10");
+        assertThat(Files.readString(journalPath)).isEmpty();
+    }
+    
+    @Test
+    void commitFailingAfterJournalingAppendsCompensation() throws Exception {
+        InMemoryStockLedger ledger = startLedger();
+        transactionManager.failNextCommit = true;
+        
+        assertThatThrownBy(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ledger.tryDecrement(PRODUCT_ID, new BigDecimal("4"), StockMovement.Reason.ORDER, 1L);
+            ledger.add(product, new BigDecimal("6"), StockMovement.Reason.RECEIPT, 2L);
+        })).isInstanceOf(TransactionSystemException.class);
+        
+        assertThat(ledger.available(PRODUCT_ID)).isEqualByComparingTo("10");
+        List<String> lines = Files.readAllLines(journalPath);
+        assertThat(lines).hasSize(4);
+        BigDecimal journaledNet = lines.stream()
+                .map(line -> new BigDecimal(line.split(",")[2]))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(journaledNet).isEqualByComparingTo("0");
+        
+        // A crash before the next flush replays the entries and their compensation to the same quantity
+        assertThat(startLedger().available(PRODUCT_ID)).isEqualByComparingTo("10");
+    }
+    
+    @Test
+    void failedFlushIsRetriedOnTheNextCycle() throws Exception {
+        InMemoryStockLedger ledger = startLedger();
+        when(stockRepository.adjustQuantity(eq(PRODUCT_ID), any(), any()))
+                .thenThrow(new RuntimeException("Database unavailable"))
+                .thenReturn(1);
+        
+        ledger.add(product, new BigDecimal("5"), StockMovement.Reason.RECEIPT, 1L);
+        ledger.tryDecrement(PRODUCT_ID, new BigDecimal("2"), StockMovement.Reason.ORDER, 2L);
+        
+        ledger.flush();
+        
+        verify(checkpointRepository, never()).save(any());
+        assertThat(Files.readAllLines(journalPath)).hasSize(2);
+        
+        ledger.tryDecrement(PRODUCT_ID, new BigDecimal("1"), StockMovement.Reason.ORDER, 3L);
+        ledger.flush();
+        
+        verify(stockRepository, times(2)).adjustQuantity(eq(PRODUCT_ID), any(), any());
+        verify(stockRepository).adjustQuantity(eq(PRODUCT_ID), eq(new BigDecimal("2")), any());
+        ArgumentCaptor<StockJournalCheckpoint> checkpoint = ArgumentCaptor.forClass(StockJournalCheckpoint.class);
+        verify(checkpointRepository).save(checkpoint.capture());
+        assertThat(checkpoint.getValue().getLastSequence()).isEqualTo(3L);
+        assertThat(ledger.available(PRODUCT_ID)).isEqualByComparingTo("12");
+        assertThat(Files.readString(journalPath)).isEmpty();
+    }
+    
+    private InMemoryStockLedger startLedger() throws Exception {
+        InMemoryStockLedger ledger = new InMemoryStockLedger();
+        ReflectionTestUtils.setField(ledger, "stockRepository", stockRepository);
+        ReflectionTestUtils.setField(ledger, "productRepository", mock(ProductRepository.class));
+        ReflectionTestUtils.setField(ledger, "checkpointRepository", checkpointRepository);
+        ReflectionTestUtils.setField(ledger, "stockHistoryService", stockHistoryService);
+        ReflectionTestUtils.setField(ledger, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(ledger, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(ledger, "journalPath", journalPath.toString());
+        ledger.recover();
+        return ledger;
+    }
+}
@@ -0,0 +1,38 @@
+package com.milkmanagement.service;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+/**
+ * Transaction manager without a resource behind it, so unit tests can run
+ * transaction synchronizations (beforeCommit, afterCommit, afterCompletion)
+ * exactly as a real commit or rollback would.
+ */
+class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+    
+    // Makes the next commit fail after the beforeCommit callbacks have run
+    boolean failNextCommit;
+    
+    @Override
+    protected Object doGetTransaction() {
+        return new Object();
+    }
+    
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+    }
+    
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        if (failNextCommit) {
+            failNextCommit = false;
+            throw new TransactionSystemException("Commit failed");
+        }
+    }
+    
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+    }
+}
@@ -0,0 +1,138 @@
+package com.milkmanagement.service;
+
+import com.milkmanagement.dto.StockLevelDTO;
+import com.milkmanagement.entity.Stock;
+import com.milkmanagement.entity.StockMovement;
+import com.milkmanagement.entity.StockSnapshot;
+import com.milkmanagement.repository.ProductRepository;
+import com.milkmanagement.repository.StockMovementRepository;
+import com.milkmanagement.repository.StockRepository;
+import com.milkmanagement.repository.StockSnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StockHistoryServiceTest {
+    
+    private static final Long PRODUCT_ID = 1L;
+    private static final LocalDateTime AT = LocalDateTime.of(2024, 3, 10, 12, 0);
+    
+    private NoOpTransactionManager transactionManager;
+    private StockMovementRepository stockMovementRepository;
+    private StockSnapshotRepository stockSnapshotRepository;
+    private StockRepository stockRepository;
+    private StockHistoryService stockHistoryService;
+    
+    @BeforeEach
+    void setUp() {
+        transactionManager = new NoOpTransactionManager();
+        stockMovementRepository = mock(StockMovementRepository.class);
+        stockSnapshotRepository = mock(StockSnapshotRepository.class);
+        stockRepository = mock(StockRepository.class);
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.existsById(PRODUCT_ID)).thenReturn(true);
+        
+        stockHistoryService = new StockHistoryService(transactionManager);
+        ReflectionTestUtils.setField(stockHistoryService, "stockMovementRepository", stockMovementRepository);
+        ReflectionTestUtils.setField(stockHistoryService, "stockSnapshotRepository", stockSnapshotRepository);
+        ReflectionTestUtils.setField(stockHistoryService, "stockRepository", stockRepository);
+        ReflectionTestUtils.setField(stockHistoryService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(stockHistoryService, "snapshotEveryMovements", 2);
+    }
+    
+    @Test
+    void stockAtAddsMovementsAfterTheLatestSnapshot() {
+        LocalDateTime takenAt = AT.minusHours(6);
+        when(stockSnapshotRepository.findFirstByProductIdAndTakenAtLessThanEqualOrderByTakenAtDescIdDesc(PRODUCT_ID, AT))
+                .thenReturn(Optional.of(new StockSnapshot(3L, PRODUCT_ID, new BigDecimal("10"), 5L, takenAt)));
+        when(stockMovementRepository.sumDeltaAfter(PRODUCT_ID, 5L, AT)).thenReturn(new BigDecimal("3"));
+        
+        StockLevelDTO level = stockHistoryService.getStockAt(PRODUCT_ID, AT);
+        
+        assertThat(level.getQuantity()).isEqualByComparingTo("13");
+        assertThat(level.getSnapshotTakenAt()).isEqualTo(takenAt);
+        verify(stockMovementRepository, never()).sumDeltaUntil(any(), any());
+    }
+    
+    @Test
+    void stockAtBeforeTheFirstSnapshotSumsMovementsFromZero() {
+        // The product was created after tracking began; its first snapshot already covers movements
+        when(stockSnapshotRepository.findFirstByProductIdAndTakenAtLessThanEqualOrderByTakenAtDescIdDesc(PRODUCT_ID, AT))
+                .thenReturn(Optional.empty());
+        when(stockSnapshotRepository.findFirstByProductIdOrderByTakenAtAscIdAsc(PRODUCT_ID))
+                .thenReturn(Optional.of(new StockSnapshot(3L, PRODUCT_ID, new BigDecimal("8"), 7L, AT.plusDays(1))));
+        when(stockMovementRepository.sumDeltaUntil(PRODUCT_ID, AT)).thenReturn(new BigDecimal("4"));
+        
+        StockLevelDTO level = stockHistoryService.getStockAt(PRODUCT_ID, AT);
+        
+        assertThat(level.getQuantity()).isEqualByComparingTo("4");
+        assertThat(level.getSnapshotTakenAt()).isNull();
+    }
+    
+    @Test
+    void stockAtBeforeAnOpeningBalanceIsRejected() {
+        // Taken before any movement with stock on hand: the history does not reach further back
+        LocalDateTime openedAt = AT.plusDays(1);
+        when(stockSnapshotRepository.findFirstByProductIdAndTakenAtLessThanEqualOrderByTakenAtDescIdDesc(PRODUCT_ID, AT))
+                .thenReturn(Optional.empty());
+        when(stockSnapshotRepository.findFirstByProductIdOrderByTakenAtAscIdAsc(PRODUCT_ID))
+                .thenReturn(Optional.of(new StockSnapshot(1L, PRODUCT_ID, new BigDecimal("20"), 0L, openedAt)));
+        
+        assertThatThrownBy(() -> stockHistoryService.getStockAt(PRODUCT_ID, AT))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("starts at " + openedAt);
+    }
+    
+    @Test
+    void snapshotLocksTheStockRowBeforeReadingTheLastMovement() {
+        Stock stock = new Stock();
+        stock.setQuantity(new BigDecimal("12"));
+        when(stockRepository.findByProductIdForUpdate(PRODUCT_ID)).thenReturn(Optional.of(stock));
+        when(stockMovementRepository.findLastIdByProductId(PRODUCT_ID)).thenReturn(42L);
+        
+        stockHistoryService.snapshot(PRODUCT_ID);
+        
+        // Movements are recorded under the row lock, so once it is held no lower movement id can still commit
+        InOrder order = inOrder(stockRepository, stockMovementRepository, stockSnapshotRepository);
+        order.verify(stockRepository).findByProductIdForUpdate(PRODUCT_ID);
+        order.verify(stockMovementRepository).findLastIdByProductId(PRODUCT_ID);
+        ArgumentCaptor<StockSnapshot> snapshot = ArgumentCaptor.forClass(StockSnapshot.class);
+        order.verify(stockSnapshotRepository).save(snapshot.capture());
+        assertThat(snapshot.getValue().getQuantity()).isEqualByComparingTo("12");
+        assertThat(snapshot.getValue().getLastMovementId()).isEqualTo(42L);
+    }
+    
+    @Test
+    void periodicSnapshotWaitsForTheRecordingTransactionToCommit() {
+        when(stockRepository.findByProductIdForUpdate(PRODUCT_ID)).thenReturn(Optional.empty());
+        when(stockMovementRepository.findLastIdByProductId(PRODUCT_ID)).thenReturn(2L);
+        
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            stockHistoryService.recordAll(List.of(
+                    new StockMovement(PRODUCT_ID, new BigDecimal("5"), StockMovement.Reason.RECEIPT, 1L, AT),
+                    new StockMovement(PRODUCT_ID, new BigDecimal("-1"), StockMovement.Reason.ORDER, 2L, AT)));
+            
+            // Its own movements are not visible to the snapshot's transaction until this one commits
+            verify(stockSnapshotRepository, never()).save(any());
+        });
+        
+        verify(stockSnapshotRepository).save(any(StockSnapshot.class));
+    }
+}
@@ -0,0 +1,20 @@
+-- Add Id Generators Table
+-- Run this on existing databases BEFORE starting the version that generates order ids from a table.
+-- Seeds each generator past the current maximum id so new ids never collide with existing rows.
+
+USE milk_management;
+
+CREATE TABLE IF NOT EXISTS id_generators (
+    sequence_name VARCHAR(64) PRIMARY KEY,
+    next_val BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+INSERT INTO id_generators (sequence_name, next_val)
+SELECT 'orders', COALESCE(MAX(id), 0) + 100 FROM orders
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
+
+INSERT INTO id_generators (sequence_name, next_val)
+SELECT 'order_items', COALESCE(MAX(id), 0) + 100 FROM order_items
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
+
+SELECT * FROM id_generators;
@@ -0,0 +1,16 @@
+-- Add Idempotency Keys Table
+-- Run this on existing databases before deploying Idempotency-Key support for
+-- POST /api/orders, /api/payments and /api/deliveries.
+
+USE milk_management;
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    record_key VARCHAR(255) PRIMARY KEY,
+    request_hash CHAR(64) NOT NULL,
+    status_code INT,
+    response_body MEDIUMTEXT,
+    location VARCHAR(255),
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    INDEX idx_idempotency_keys_expires_at (expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
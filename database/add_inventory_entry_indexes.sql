@@ -0,0 +1,9 @@
+-- Add Inventory Entry Indexes
+-- Run this on databases created before inventory entries were queried by product and date range.
+-- The composite index also serves the product_id foreign key, so the single-column index is dropped.
+
+USE milk_management;
+
+ALTER TABLE inventory_entries
+    ADD INDEX idx_inventory_entries_product_date (product_id, entry_date),
+    DROP INDEX idx_product;
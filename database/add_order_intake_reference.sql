@@ -0,0 +1,10 @@
+-- Add Order Intake Reference Column
+-- Run this on existing databases before enabling asynchronous order intake (orders.intake.enabled=true).
+-- The unique key guarantees an order queued once is never created twice, even across restarts.
+
+USE milk_management;
+
+ALTER TABLE orders ADD COLUMN intake_reference VARCHAR(36) NULL AFTER payment_data;
+ALTER TABLE orders ADD UNIQUE KEY uk_orders_intake_reference (intake_reference);
+
+SELECT id, intake_reference FROM orders ORDER BY id DESC LIMIT 10;
@@ -0,0 +1,20 @@
+-- Add Product Type Column
+-- Run this on databases created before products had a product_type column.
+-- The application also fills in missing types on startup, so the UPDATEs are optional.
+
+USE milk_management;
+
+ALTER TABLE products ADD COLUMN product_type VARCHAR(20) NULL AFTER description;
+CREATE INDEX idx_products_type ON products (product_type);
+
+-- Same precedence as the application: cow, then buffalo, then curd
+UPDATE products SET product_type = 'COW_MILK'
+WHERE product_type IS NULL AND UPPER(name) LIKE '%COW%';
+
+UPDATE products SET product_type = 'BUFFALO_MILK'
+WHERE product_type IS NULL AND UPPER(name) LIKE '%BUFFALO%';
+
+UPDATE products SET product_type = 'CURD'
+WHERE product_type IS NULL AND UPPER(name) LIKE '%CURD%';
+
+SELECT product_type, COUNT(*) AS products FROM products GROUP BY product_type;
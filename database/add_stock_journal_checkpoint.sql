@@ -0,0 +1,10 @@
+-- Add Stock Journal Checkpoint Table
+-- Required when running with stock.engine=memory on databases created before the in-memory stock engine.
+
+USE milk_management;
+
+CREATE TABLE IF NOT EXISTS stock_journal_checkpoint (
+    id BIGINT PRIMARY KEY,
+    last_sequence BIGINT NOT NULL,
+    updated_at TIMESTAMP NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,27 @@
+-- Add Stock Movements And Snapshots
+-- Run this on databases created before stock changes were recorded as movements.
+-- The application takes an opening snapshot of every product on its next start.
+
+USE milk_management;
+
+CREATE TABLE IF NOT EXISTS stock_movements (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    quantity_delta DECIMAL(10, 2) NOT NULL,
+    reason VARCHAR(20) NOT NULL,
+    reference_id BIGINT,
+    occurred_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
+    INDEX idx_stock_movements_product_id (product_id, id),
+    INDEX idx_stock_movements_product_time (product_id, occurred_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS stock_snapshots (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    quantity DECIMAL(10, 2) NOT NULL,
+    last_movement_id BIGINT NOT NULL,
+    taken_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
+    INDEX idx_stock_snapshots_product_time (product_id, taken_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,8 @@
+-- Add Stock Version Column
+-- Run this on databases created before stock rows carried an optimistic-lock version.
+
+USE milk_management;
+
+ALTER TABLE stock ADD COLUMN version BIGINT NOT NULL DEFAULT 0 AFTER last_updated;
+
+SELECT id, product_id, quantity, version FROM stock;
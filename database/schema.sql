@@ -60,9 +60,11 @@ CREATE TABLE products (
     name VARCHAR(100) NOT NULL,
     unit VARCHAR(20) DEFAULT 'LITRE',
     description TEXT,
+    product_type VARCHAR(20),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-    UNIQUE KEY unique_product_name (name)
+    UNIQUE KEY unique_product_name (name),
+    INDEX idx_products_type (product_type)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- Product prices (to track price history)
@@ -87,11 +89,61 @@ CREATE TABLE stock (
     product_id BIGINT NOT NULL,
     quantity DECIMAL(10, 2) NOT NULL DEFAULT 0.00,
     last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
     UNIQUE KEY unique_product_stock (product_id),
     INDEX idx_product (product_id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- Stock movements (append-only; one row per stock change)
+CREATE TABLE stock_movements (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    quantity_delta DECIMAL(10, 2) NOT NULL,
+    reason VARCHAR(20) NOT NULL,
+    reference_id BIGINT,
+    occurred_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
+    INDEX idx_stock_movements_product_id (product_id, id),
+    INDEX idx_stock_movements_product_time (product_id, occurred_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Stock snapshots (quantity per product as of a movement; taken daily and every N movements)
+CREATE TABLE stock_snapshots (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    quantity DECIMAL(10, 2) NOT NULL,
+    last_movement_id BIGINT NOT NULL,
+    taken_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
+    INDEX idx_stock_snapshots_product_time (product_id, taken_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Stock journal checkpoint (in-memory stock engine: last journal sequence written to stock)
+CREATE TABLE stock_journal_checkpoint (
+    id BIGINT PRIMARY KEY,
+    last_sequence BIGINT NOT NULL,
+    updated_at TIMESTAMP NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Id blocks for table-generated ids (orders, order_items)
+CREATE TABLE id_generators (
+    sequence_name VARCHAR(64) PRIMARY KEY,
+    next_val BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Idempotency keys (stored responses of write requests sent with an Idempotency-Key header)
+CREATE TABLE idempotency_keys (
+    record_key VARCHAR(255) PRIMARY KEY,
+    request_hash CHAR(64) NOT NULL,
+    status_code INT,
+    response_body MEDIUMTEXT,
+    location VARCHAR(255),
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    INDEX idx_idempotency_keys_expires_at (expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- Inventory entries table (tracks inventory updates/history)
 CREATE TABLE inventory_entries (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -104,7 +156,7 @@ CREATE TABLE inventory_entries (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
     FOREIGN KEY (created_by) REFERENCES users(id) ON DELETE SET NULL,
-    INDEX idx_product (product_id),
+    INDEX idx_inventory_entries_product_date (product_id, entry_date),
     INDEX idx_entry_date (entry_date)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
@@ -180,6 +232,21 @@ CREATE TABLE invoice_items (
     INDEX idx_delivery (delivery_id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- Daily sales rollup (maintained by the application, rebuildable from
+-- milk_deliveries and payments). product_id/customer_id 0 means "all".
+CREATE TABLE daily_sales_summary (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    summary_date DATE NOT NULL,
+    product_id BIGINT NOT NULL DEFAULT 0,
+    customer_id BIGINT NOT NULL DEFAULT 0,
+    delivered_quantity DECIMAL(14, 2) NOT NULL DEFAULT 0.00,
+    delivered_amount DECIMAL(14, 2) NOT NULL DEFAULT 0.00,
+    payment_amount DECIMAL(14, 2) NOT NULL DEFAULT 0.00,
+    delivery_count BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY unique_summary_row (summary_date, product_id, customer_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- Insert default roles
 INSERT INTO roles (name, description) VALUES
 ('ROLE_ADMIN', 'Administrator with full access'),
@@ -198,10 +265,10 @@ INSERT INTO user_roles (user_id, role_id) VALUES
 (2, 2); -- manager has ROLE_MANAGER
 
 -- Insert default products
-INSERT INTO products (name, unit, description) VALUES
-('Milk', 'LITRE', 'Fresh cow/buffalo milk'),
-('Curd', 'KG', 'Fresh curd'),
-('Butter', 'KG', 'Fresh butter');
+INSERT INTO products (name, unit, description, product_type) VALUES
+('Milk', 'LITRE', 'Fresh cow/buffalo milk', NULL),
+('Curd', 'KG', 'Fresh curd', 'CURD'),
+('Butter', 'KG', 'Fresh butter', NULL);
 
 -- Insert default product prices
 INSERT INTO product_prices (product_id, price_per_unit, effective_from, is_active, created_by) VALUES
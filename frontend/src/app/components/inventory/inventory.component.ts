@@ -6,6 +6,10 @@ import { MatSnackBar } from '@angular/material/snack-bar';
 import { MatDialog } from '@angular/material/dialog';
 import { ConfirmDialogComponent } from '../shared/confirm-dialog.component';
 
+// The entries table covers recent weeks and loads one page at a time
+const ENTRY_WINDOW_DAYS = 28;
+const ENTRY_PAGE_SIZE = 50;
+
 @Component({
   selector: 'app-inventory',
   templateUrl: './inventory.component.html',
@@ -16,8 +20,13 @@ export class InventoryComponent implements OnInit {
   products: Product[] = [];
   selectedProductId: number | null = null;
   status: InventoryStatus | null = null;
+  private statuses: InventoryStatus[] = [];
   loading = false;
   inventoryEntries: InventoryEntry[] = [];
+  entriesNextCursor: string | null = null;
+  loadingMoreEntries = false;
+  private entriesFromDate = '';
+  private entriesToDate = '';
   displayedColumns: string[] = ['entryDate', 'productName', 'totalLitersReceived', 'pricePerLitre', 'actions'];
   editingEntry: InventoryEntry | null = null;
 
@@ -61,16 +70,15 @@ export class InventoryComponent implements OnInit {
 
   onProductChange(): void {
     this.selectedProductId = this.inventoryForm.value.productId;
-    this.loadStatus();
+    this.showSelectedStatus();
   }
 
+  // One request covers every product, so switching products needs no further call
   loadStatus(): void {
-    if (this.selectedProductId == null) {
-      return;
-    }
-    this.inventoryService.getStatus(this.selectedProductId).subscribe({
-      next: (status) => {
-        this.status = status;
+    this.inventoryService.getAllStatuses().subscribe({
+      next: (statuses) => {
+        this.statuses = statuses;
+        this.showSelectedStatus();
       },
       error: () => {
         // Silently fail - status might not exist
@@ -78,11 +86,27 @@ export class InventoryComponent implements OnInit {
     });
   }
 
+  private showSelectedStatus(): void {
+    this.status = this.statuses.find(status => status.productId === this.selectedProductId) ?? null;
+  }
+
   loadInventoryEntries(): void {
     this.loading = true;
-    this.inventoryService.getAllInventoryEntries(this.selectedProductId || undefined).subscribe({
-      next: (entries) => {
-        this.inventoryEntries = entries;
+    // The range is fixed when the first page loads, so later pages continue the same listing
+    const toDate = new Date();
+    const fromDate = new Date(toDate);
+    fromDate.setDate(fromDate.getDate() - (ENTRY_WINDOW_DAYS - 1));
+    this.entriesFromDate = fromDate.toISOString().substring(0, 10);
+    this.entriesToDate = toDate.toISOString().substring(0, 10);
+    this.inventoryService.getInventoryEntryPage(
+      this.entriesFromDate,
+      this.entriesToDate,
+      ENTRY_PAGE_SIZE,
+      this.selectedProductId || undefined
+    ).subscribe({
+      next: (page) => {
+        this.inventoryEntries = page.entries;
+        this.entriesNextCursor = page.nextCursor;
         this.loading = false;
       },
       error: () => {
@@ -92,6 +116,30 @@ export class InventoryComponent implements OnInit {
     });
   }
 
+  loadMoreInventoryEntries(): void {
+    if (!this.entriesNextCursor || this.loadingMoreEntries) {
+      return;
+    }
+    this.loadingMoreEntries = true;
+    this.inventoryService.getInventoryEntryPage(
+      this.entriesFromDate,
+      this.entriesToDate,
+      ENTRY_PAGE_SIZE,
+      this.selectedProductId || undefined,
+      this.entriesNextCursor
+    ).subscribe({
+      next: (page) => {
+        this.inventoryEntries = this.inventoryEntries.concat(page.entries);
+        this.entriesNextCursor = page.nextCursor;
+        this.loadingMoreEntries = false;
+      },
+      error: () => {
+        this.snackBar.open('Error loading inventory entries', 'Close', { duration: 3000 });
+        this.loadingMoreEntries = false;
+      }
+    });
+  }
+
   saveInventory(): void {
     if (this.inventoryForm.invalid || this.selectedProductId == null) {
       return;
@@ -150,7 +198,7 @@ export class InventoryComponent implements OnInit {
       pricePerLitre: entry.pricePerLitre
     });
     this.selectedProductId = entry.productId;
-    this.loadStatus();
+    this.showSelectedStatus();
     // Scroll to form
     document.querySelector('.update-card')?.scrollIntoView({ behavior: 'smooth', block: 'start' });
   }
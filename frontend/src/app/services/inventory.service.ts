@@ -1,8 +1,10 @@
 import { Injectable } from '@angular/core';
-import { HttpClient, HttpParams } from '@angular/common/http';
+import { HttpClient, HttpParams, HttpResponse } from '@angular/common/http';
 import { Observable } from 'rxjs';
+import { map } from 'rxjs/operators';
 
 const API_URL = 'http://localhost:8080/api/inventory';
+const NEXT_CURSOR_HEADER = 'X-Next-Cursor';
 
 export interface InventoryStatus {
   productId: number;
@@ -20,6 +22,11 @@ export interface InventoryUpdateRequest {
   pricePerLitre: number;
 }
 
+export interface InventoryEntryPage {
+  entries: InventoryEntry[];
+  nextCursor: string | null; // Pass back to get the next page; null on the last page
+}
+
 export interface InventoryEntry {
   id: number;
   productId: number;
@@ -43,16 +50,33 @@ export class InventoryService {
     return this.http.get<InventoryStatus>(`${API_URL}/status`, { params });
   }
 
+  getAllStatuses(): Observable<InventoryStatus[]> {
+    return this.http.get<InventoryStatus[]>(`${API_URL}/status/all`);
+  }
+
   updateInventory(request: InventoryUpdateRequest): Observable<InventoryStatus> {
     return this.http.post<InventoryStatus>(`${API_URL}/update`, request);
   }
 
-  getAllInventoryEntries(productId?: number): Observable<InventoryEntry[]> {
-    let params = new HttpParams();
+  // One page of entries in the range (ISO yyyy-MM-dd), newest first
+  getInventoryEntryPage(fromDate: string, toDate: string, limit: number, productId?: number,
+                        cursor?: string | null): Observable<InventoryEntryPage> {
+    let params = new HttpParams()
+      .set('fromDate', fromDate)
+      .set('toDate', toDate)
+      .set('limit', limit.toString());
     if (productId != null) {
       params = params.set('productId', productId.toString());
     }
-    return this.http.get<InventoryEntry[]>(`${API_URL}/entries`, { params });
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
+    return this.http.get<InventoryEntry[]>(`${API_URL}/entries`, { params, observe: 'response' }).pipe(
+      map((response: HttpResponse<InventoryEntry[]>) => ({
+        entries: response.body ?? [],
+        nextCursor: response.headers.get(NEXT_CURSOR_HEADER)
+      }))
+    );
   }
 
   getInventoryEntryById(id: number): Observable<InventoryEntry> {